@@ -8,6 +8,14 @@ public class Account implements Comparable<Account> {
     private int losses;
     private double winRate;
     private boolean isRemoved;
+    // AccountBank this account is stored in, told about every change so it can save only what changed
+    private AccountBank bank;
+    private boolean dirty;
+    // Games recorded since the last save, and whether they are the only unsaved change so that saving them does
+    // not need the whole account
+    private boolean onlyGames;
+    private int newWins;
+    private int newLosses;
 
     /**
      * Account creation
@@ -21,8 +29,7 @@ public class Account implements Comparable<Account> {
         this.password = password;
         this.wins = wins;
         this.losses = losses;
-        // Simple Win Rate calculation done in most games (wins/total games)
-        this.winRate = (wins) / (wins + losses + 0.0);
+        updateWinRate();
         // Added for robust AccountBank (HashMap) functionality (not used in this game but is available)
         this.isRemoved = false;
     }
@@ -46,13 +53,13 @@ public class Account implements Comparable<Account> {
 
     /**
      * Overrides Object's compareTo function. Used for Leaderboard DownHeap functionality.
+     * Compares the primitive win rates, so heaps do not box two Doubles on every comparison.
      * @param other the object to be compared.
      * @return positive number if current winrate > other winrate, negative number if less than, and zero if equal
      */
     @Override
     public int compareTo(Account other) {
-        Double winRate = this.winRate;
-        return winRate.compareTo(other.getWinRate());
+        return Double.compare(winRate, other.winRate);
     }
 
     /**
@@ -88,6 +95,113 @@ public class Account implements Comparable<Account> {
         isRemoved = value;
     }
 
+    /**
+     * Returns whether the account changed since its AccountBank was last saved
+     * @return true if the account has unsaved changes
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Sets the value of the dirty field. Used by AccountBank to track unsaved changes.
+     * @param value new value of dirty
+     */
+    void setDirty(boolean value) {
+        dirty = value;
+    }
+
+    /**
+     * Returns whether the only unsaved change of the account is the games counted by getNewWins() and
+     * getNewLosses(). Otherwise the account was added, replaced or removed and has to be saved whole.
+     * @return true if only games changed the account since its last save
+     */
+    boolean isOnlyGames() {
+        return onlyGames;
+    }
+
+    /**
+     * Returns the wins recorded since the account was last saved
+     * @return unsaved wins
+     */
+    int getNewWins() {
+        return newWins;
+    }
+
+    /**
+     * Returns the losses recorded since the account was last saved
+     * @return unsaved losses
+     */
+    int getNewLosses() {
+        return newLosses;
+    }
+
+    /**
+     * Sets whether the games recorded since the last save are the only unsaved change. Used by AccountBank.
+     * @param value new value of onlyGames
+     */
+    void setOnlyGames(boolean value) {
+        onlyGames = value;
+    }
+
+    /**
+     * Counts a game recorded since the last save. Used by AccountBank.
+     * @param won true if the account won the game
+     */
+    void countNewGame(boolean won) {
+        if (won) {
+            newWins++;
+        } else {
+            newLosses++;
+        }
+    }
+
+    /**
+     * Returns a copy holding the current state and the unsaved change of the account, then marks the account
+     * as saved. Used by AccountBank.takeChanges().
+     * @return copy of the account and its change
+     */
+    Account takeChange() {
+        Account copy = new Account(username, password, wins, losses);
+        copy.isRemoved = isRemoved;
+        copy.onlyGames = onlyGames;
+        copy.newWins = newWins;
+        copy.newLosses = newLosses;
+        forgetChange();
+        return copy;
+    }
+
+    /**
+     * Marks the account as saved
+     */
+    void forgetChange() {
+        dirty = false;
+        onlyGames = false;
+        newWins = 0;
+        newLosses = 0;
+    }
+
+    /**
+     * Folds an older change of the same account, taken by takeChange(), into this newer one so that saving this
+     * change also saves the older one. This copy already holds the newest state, so only the games are added up.
+     * @param older - change taken before this one
+     */
+    void absorb(Account older) {
+        if (!older.onlyGames) {
+            onlyGames = false;
+        }
+        newWins += older.newWins;
+        newLosses += older.newLosses;
+    }
+
+    /**
+     * Links the account to the AccountBank that stores it
+     * @param bank AccountBank holding this account
+     */
+    void setBank(AccountBank bank) {
+        this.bank = bank;
+    }
+
     /**
      * Overrides Object's toString function. Used for Leaderboards toString method.
      * @return String displaying account name as well as win rate associated with the account
@@ -122,6 +236,8 @@ public class Account implements Comparable<Account> {
      */
     public void win() {
         this.wins++;
+        updateWinRate();
+        changed(true);
     }
 
     /**
@@ -129,6 +245,26 @@ public class Account implements Comparable<Account> {
      */
     public void lose() {
         this.losses++;
+        updateWinRate();
+        changed(false);
+    }
+
+    /**
+     * Recomputes the cached win rate so rankings never see a stale value
+     */
+    private void updateWinRate() {
+        // Simple Win Rate calculation done in most games (wins/total games)
+        this.winRate = (wins) / (wins + losses + 0.0);
+    }
+
+    /**
+     * Tells the AccountBank holding this account that it has to be saved and re-ranked
+     * @param won true if the account won the game it just played
+     */
+    private void changed(boolean won) {
+        if (bank != null) {
+            bank.resultRecorded(this, won);
+        }
     }
 
     /**
@@ -1,4 +1,8 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 /**
  * Data Structure of Accounts implemented as a Linear Probing HashMap.
@@ -16,8 +20,39 @@ public class AccountBank {
      */
     public static final double MAX_LOAD_FACTOR = 0.67;
 
+    /**
+     * The table shrinks once live accounts fill less than this fraction of it
+     */
+    public static final double MIN_LOAD_FACTOR = 0.15;
+
+    /**
+     * The table is rebuilt at the same length once DEL markers take up more than this fraction of it
+     */
+    public static final double MAX_REMOVED_RATIO = 0.25;
+
+    /**
+     * Number of old table slots moved by each operation during an incremental resize
+     */
+    public static final int MIGRATE_STEP = 16;
+
     private Account[] table;
     private int size;
+    // DEL markers in the table, they take up slots until a resize drops them
+    private int removed;
+    // DEL markers the last resize had to keep because the source still holds their accounts
+    private int keptRemoved;
+    // Incremental resize: the old table still being moved into table (null when not resizing) and its next slot
+    private boolean incrementalResize;
+    private Account[] oldTable;
+    private int migrateIndex;
+    // Where accounts that are not in the table yet are read from. null if every account is in the table
+    private AccountSource source;
+    // Accounts added, updated or removed since the last save, in the order they first changed
+    private ArrayList<Account> changes;
+    // Every username of the table and the source, so lookups of missing usernames can stop before probing
+    private UsernameFilter filter;
+    // Told about every added, changed and removed account
+    private ArrayList<AccountListener> listeners;
 
     /**
      * Constructs a new LinearProbingHashMap.
@@ -33,8 +68,33 @@ public class AccountBank {
      * @param initialCapacity the initial capacity of the backing array
      */
     public AccountBank(int initialCapacity) {
+        this(initialCapacity, false);
+    }
+
+    /**
+     * Constructs a new LinearProbingHashMap.
+     * With incremental resize on, growing the table does not rehash every account at once. The old table is kept
+     * and every later operation moves MIGRATE_STEP of its slots into the new table, so no single put() pays for
+     * the whole rehash.
+     * @param initialCapacity the initial capacity of the backing array
+     * @param incrementalResize true to spread resizes over later operations
+     */
+    public AccountBank(int initialCapacity, boolean incrementalResize) {
         size = 0;
         table = new Account[initialCapacity];
+        changes = new ArrayList<>();
+        listeners = new ArrayList<>();
+        filter = new UsernameFilter((int) (initialCapacity * MAX_LOAD_FACTOR));
+        this.incrementalResize = incrementalResize;
+    }
+
+    /**
+     * Returns the backing table length needed to hold expectedSize accounts without a resize.
+     * @param expectedSize number of accounts that will be put in the map
+     * @return initial capacity to pass to the constructor
+     */
+    public static int capacityFor(int expectedSize) {
+        return Math.max(INITIAL_CAPACITY, (int) Math.ceil((expectedSize + 1) / MAX_LOAD_FACTOR) + 1);
     }
 
     /**
@@ -66,16 +126,120 @@ public class AccountBank {
      * @throws java.lang.IllegalArgumentException if key or value is null
      */
     public String put(Account account) {
+        return insert(copyOf(account), true, true);
+    }
+
+    /**
+     * Adds an account that was just read from persistent storage. Works like put() except that the account is
+     * not recorded as changed, so saveChanges() does not write it back.
+     * @param account - the account to add to the AccountBank
+     * @return null if the key was not already in the map. If it was in the
+     * map, return the old username associated with it
+     * @throws java.lang.IllegalArgumentException if key or value is null
+     */
+    public String putClean(Account account) {
+        return insert(copyOf(account), false, true);
+    }
+
+    /**
+     * Adds an account without making a copy of it. The map keeps the given object as its entry, so the caller
+     * must not use it for anything else afterwards. Meant for accounts that were just created, for example by a
+     * parser, where the copy made by put() would only be garbage.
+     * @param account - the account to add, owned by the map from now on
+     * @return null if the key was not already in the map. If it was in the
+     * map, return the old username associated with it
+     * @throws java.lang.IllegalArgumentException if key or value is null
+     */
+    public String putOwned(Account account) {
+        return insert(account, true, true);
+    }
+
+    /**
+     * Works like putOwned() except that the account is not recorded as changed, like putClean().
+     * @param account - the account to add, owned by the map from now on
+     * @return null if the key was not already in the map. If it was in the
+     * map, return the old username associated with it
+     * @throws java.lang.IllegalArgumentException if key or value is null
+     */
+    public String putOwnedClean(Account account) {
+        return insert(account, false, true);
+    }
+
+    /**
+     * Bulk insert for imports, restores and test fixtures. Grows the table once to fit every account, then adds
+     * them in order with putOwned(), so nothing is copied or rehashed along the way.
+     * @param accounts - accounts to add, owned by the map from now on
+     * @return number of usernames that were not in the map before
+     * @throws java.lang.IllegalArgumentException if a key or value is null
+     */
+    public int putAll(Collection<? extends Account> accounts) {
+        return insertAll(accounts, true);
+    }
+
+    /**
+     * Works like putAll() except that the accounts are not recorded as changed, like putClean().
+     * @param accounts - accounts to add, owned by the map from now on
+     * @return number of usernames that were not in the map before
+     * @throws java.lang.IllegalArgumentException if a key or value is null
+     */
+    public int putAllClean(Collection<? extends Account> accounts) {
+        return insertAll(accounts, false);
+    }
+
+    /**
+     * Helper method for putAll() and putAllClean()
+     * @param accounts - accounts to add
+     * @param changed - whether the new entries have to be saved by saveChanges()
+     * @return number of usernames that were not in the map before
+     */
+    private int insertAll(Collection<? extends Account> accounts, boolean changed) {
+        ensureCapacity(size + accounts.size());
+        int before = size;
+        for (Account account : accounts) {
+            insert(account, changed, true);
+        }
+        return size - before;
+    }
+
+    /**
+     * Grows the backing table (and the username filter) once so that expectedSize accounts fit without another
+     * resize. Use it before a stream of putOwned() calls whose length is known up front.
+     * @param expectedSize - number of accounts the map will hold
+     */
+    public void ensureCapacity(int expectedSize) {
+        int length = capacityFor(expectedSize + removed);
+        if (length > table.length) {
+            resizeBackingTable(length);
+        }
+        if (filter.capacity() < expectedSize) {
+            rebuildFilter(expectedSize);
+        }
+    }
+
+    /**
+     * Helper method for the put methods that does the actual linear probing insert.
+     * @param account - the entry to store, already copied if it has to be
+     * @param changed - whether the new entry has to be saved by saveChanges()
+     * @param filtered - whether a new username has to be added to the filter. false for accounts read from the
+     *                 source, whose usernames are already in it
+     * @return null if the key was not already in the map, the old username otherwise
+     */
+    private String insert(Account account, boolean changed, boolean filtered) {
         // Checks if valid input
-        if (account.getUsername() == null || account.getPassword() == null) {
+        if (account == null || account.getUsername() == null || account.getPassword() == null) {
             throw new IllegalArgumentException("Key or Value cannot be null");
         }
 
         // Checks if it needs to resize
-        double loadFactor = (double) (size + 1) / table.length;
+        double loadFactor = (double) (size + removed + 1) / table.length;
         if (loadFactor > MAX_LOAD_FACTOR) {
-            resizeBackingTable(table.length * 2 + 1);
+            if (incrementalResize) {
+                startResize(table.length * 2 + 1);
+            } else {
+                resizeBackingTable(table.length * 2 + 1);
+            }
         }
+        migrate(account.getUsername());
 
         // Adds element at index
         int curr = Math.abs(account.getUsername().hashCode() % table.length);
@@ -84,39 +248,50 @@ public class AccountBank {
         String out = null;
         // While values at index and past index are not null and not equal to account we want to add
         // and are removed already and our current run is not longer than how many elements in the table keep probing
-        while (table[curr] != null && probeSize < size
+        while (table[curr] != null && probeSize < size + removed
                 && !(table[curr].getUsername().equals(account.getUsername()) && table[curr].isRemoved())) {
             // First DEL marker found, save to place new account. Keep incrementing
-            if (table[curr].isRemoved() && delIndex < 0) {
+            if (reusable(table[curr]) && delIndex < 0) {
                 delIndex = curr;
                 curr = Math.abs((curr + 1) % table.length);
-            // Found the same account
+            // Found the same account. Replace it where it is, an earlier DEL marker would leave a duplicate behind
             } else if (table[curr].getUsername().equals(account.getUsername())) {
                 out = table[curr].getUsername();
+                delIndex = -1;
                 break;
             // Keep probing
             } else {
-                probeSize = table[curr].isRemoved() ? probeSize : probeSize + 1;
+                probeSize++;
                 curr = Math.abs((curr + 1) % table.length);
             }
         }
         // If there was a DEL marker before where we found the next best spot to put the value
         if (delIndex < 0) {
-            if (table[curr] == null || table[curr].isRemoved()) {
+            boolean added = table[curr] == null || table[curr].isRemoved();
+            if (table[curr] != null && table[curr].isRemoved()) {
+                removed--;
+            }
+            table[curr] = link(account, changed);
+            if (added) {
                 size++;
+                addToFilter(account.getUsername(), filtered);
             }
-            table[curr] = new Account(account.getUsername(), account.getPassword(), account.getWins(),
-                    account.getLosses());
+            notifyUpdated(account);
             return out;
         // No earlier DEL marker. Spot we have found is best spot for new Account
         } else {
-            if (!table[delIndex].isRemoved()) {
+            boolean added = table[delIndex].isRemoved();
+            if (!added) {
                 out = table[delIndex].getUsername();
             } else {
+                removed--;
+            }
+            table[delIndex] = link(account, changed);
+            if (added) {
                 size++;
+                addToFilter(account.getUsername(), filtered);
             }
-            table[delIndex] = new Account(account.getUsername(), account.getPassword(), account.getWins(),
-                    account.getLosses());
+            notifyUpdated(account);
             return out;
         }
     }
@@ -138,23 +313,73 @@ public class AccountBank {
         }
         // Saves username of account as key
         String key = account.getUsername();
+        if (!filter.mightContain(key)) {
+            throw new NoSuchElementException("Account is not in map");
+        }
+        migrate(key);
 
         int index = Math.abs(key.hashCode() % table.length);
 
         int counted = 0;
         // While we have not null elements and have not found valid account and not past size, keep probing
-        while (table[index] != null && !table[index].getUsername().equals(key) && counted < size) {
-            counted = table[index].isRemoved() ? counted : counted + 1;
+        while (table[index] != null && !table[index].getUsername().equals(key) && counted < size + removed) {
+            counted++;
             index = Math.abs((index + 1) % table.length);
 
         }
+        // Account has not been read from the source yet, read it so it can be marked as removed
+        boolean found = table[index] != null && table[index].getUsername().equals(key);
+        if (!found && faultIn(key) != null) {
+            return remove(account);
+        }
         // If did not find account or account has already been removed
         if (table[index] == null || table[index].isRemoved()) {
             throw new NoSuchElementException("Account is not in map");
         } else {
             table[index].setRemoved(true);
+            markChanged(table[index]);
+            filter.remove(key);
+            removed++;
             size--;
-            return table[index].getUsername();
+            Account out = table[index];
+            compact();
+            for (AccountListener listener : listeners) {
+                listener.accountRemoved(out);
+            }
+            return out.getUsername();
+        }
+    }
+
+    /**
+     * Rebuilds the table after a remove() if it has become mostly empty. Shrinks it to at most half its length
+     * once live accounts fill less than MIN_LOAD_FACTOR of it, or drops the DEL markers at the same length once
+     * the ones a rebuild can drop take up more than MAX_REMOVED_RATIO of it, so probe sequences stay short and the
+     * table stays small under account churn.
+     *
+     * A shrink needs the table to at least halve, and dropping markers needs MAX_REMOVED_RATIO * length new
+     * markers since the last rebuild, so every rebuild follows a number of removes proportional to the length it
+     * copies and remove() stays O(1) amortized. DEL markers kept for the source take slots in the rebuilt table,
+     * so while they hold the length up the table is not rebuilt at all.
+     */
+    private void compact() {
+        if (oldTable != null) {
+            return;
+        }
+        int length = table.length;
+        if (length > INITIAL_CAPACITY && size < length * MIN_LOAD_FACTOR) {
+            // Leave room to grow again so that removes and puts around the threshold do not keep resizing
+            int shrunk = capacityFor(2 * size + (source == null ? 0 : removed));
+            if (shrunk <= length / 2) {
+                length = shrunk;
+            }
+        }
+        if (length == table.length && removed - keptRemoved <= length * MAX_REMOVED_RATIO) {
+            return;
+        }
+        if (incrementalResize) {
+            startResize(length);
+        } else {
+            resizeBackingTable(length);
         }
     }
 
@@ -183,19 +408,31 @@ public class AccountBank {
         }
 
         String key = account.getUsername();
+        // Usernames the filter has never seen are not in the table or the source
+        if (!filter.mightContain(key)) {
+            throw new NoSuchElementException("Key is not in map");
+        }
+        migrate(key);
         int counted = 0;
         int index = Math.abs(key.hashCode() % table.length);
         // While current element is not null and not account we want and removed,
         // and we have not probed through full HashMap
         while (table[index] != null
                 && !(table[index].getUsername().equals(key) && table[index].isRemoved())
-                && (counted < size)) {
+                && (counted < size + removed)) {
             if (table[index].getUsername().equals(key)) {
                 return table[index].getPassword();
             }
-            counted = table[index].isRemoved() ? counted : counted + 1;
+            counted++;
             index = (index + 1) % table.length;
         }
+        // Not read from the source yet (a DEL marker for this key means it was removed)
+        if (!isRemovedKey(index, key)) {
+            Account loaded = faultIn(key);
+            if (loaded != null) {
+                return loaded.getPassword();
+            }
+        }
         throw new NoSuchElementException("Key is not in map");
     }
 
@@ -212,22 +449,349 @@ public class AccountBank {
         }
 
         String key = account.getUsername();
+        if (!filter.mightContain(key)) {
+            throw new NoSuchElementException("Key is not in map");
+        }
+        migrate(key);
         int counted = 0;
         int index = Math.abs(key.hashCode() % table.length);
 
         // Similar while loop to previous functions
         while (table[index] != null
                 && !(table[index].getUsername().equals(key) && table[index].isRemoved())
-                && (counted < size)) {
+                && (counted < size + removed)) {
             if (table[index].getUsername().equals(key)) {
                 return table[index];
             }
-            counted = table[index].isRemoved() ? counted : counted + 1;
+            counted++;
             index = (index + 1) % table.length;
         }
+        // Not read from the source yet (a DEL marker for this key means it was removed)
+        if (!isRemovedKey(index, key)) {
+            Account loaded = faultIn(key);
+            if (loaded != null) {
+                return loaded;
+            }
+        }
         throw new NoSuchElementException("Key is not in map");
     }
 
+    /**
+     * Records a finished game on the account stored for a username, reading it from the source first if needed.
+     * The stored entry is updated in place, so it is saved with the next changes and every listener hears about
+     * the game through gamePlayed() as well as accountUpdated(). Putting a copy with new counters only tells
+     * listeners that the account changed, not that a game was played.
+     * @param username username of the account that played
+     * @param won true if the account won the game
+     * @return the updated entry
+     * @throws java.lang.IllegalArgumentException if username is null
+     * @throws java.util.NoSuchElementException if the account is not in the map
+     */
+    public Account recordResult(String username, boolean won) {
+        if (username == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        Account entry = getAccount(new Account(username, ""));
+        if (won) {
+            entry.win();
+        } else {
+            entry.lose();
+        }
+        return entry;
+    }
+
+    /**
+     * Checks whether a username is taken, for example before creating a new account with it.
+     * Most free usernames are answered by the filter without probing the table or reading the source.
+     * @param username username to look for
+     * @return true if an account with this username exists
+     */
+    public boolean contains(String username) {
+        if (username == null || !filter.mightContain(username)) {
+            return false;
+        }
+        try {
+            getAccount(new Account(username, ""));
+            return true;
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds a new username to the filter, rebuilding the filter larger once it holds more than it was sized for
+     * @param key username that was added to the table
+     * @param filtered false if the username is already in the filter
+     */
+    private void addToFilter(String key, boolean filtered) {
+        if (filtered) {
+            filter.add(key);
+        }
+        if (filter.count() > filter.capacity()) {
+            rebuildFilter();
+        }
+    }
+
+    /**
+     * Builds a new filter from every live account of the table and every username of the source, sized for
+     * twice as many usernames so that it is not rebuilt again soon. The source hashes are read without loading
+     * any account. Accounts both in the table and in the source (or in both tables during an incremental resize)
+     * are counted twice, which can only make a removed username look present until the next rebuild.
+     */
+    private void rebuildFilter() {
+        rebuildFilter(2 * (size + (source == null ? 0 : source.size())));
+    }
+
+    /**
+     * Builds a new filter like rebuildFilter() does, sized for at least capacity usernames
+     * @param capacity number of usernames the new filter is sized for
+     */
+    private void rebuildFilter(int capacity) {
+        filter = new UsernameFilter(Math.max(capacity, size + (source == null ? 0 : source.size())));
+        for (Account[] entries : new Account[][] {table, oldTable}) {
+            if (entries == null) {
+                continue;
+            }
+            for (Account account : entries) {
+                if (account != null && !account.isRemoved()) {
+                    filter.add(account.getUsername());
+                }
+            }
+        }
+        if (source != null) {
+            source.forEachUsernameHash(filter::addHash);
+        }
+    }
+
+    /**
+     * Makes the copy of an account that put() stores in the table, so the caller's object stays its own
+     * @param account account given to put()
+     * @return the copy, or null if account is null
+     */
+    private static Account copyOf(Account account) {
+        if (account == null) {
+            return null;
+        }
+        return new Account(account.getUsername(), account.getPassword(), account.getWins(), account.getLosses());
+    }
+
+    /**
+     * Links an entry to this map, so that later wins and losses are recorded as changes.
+     * @param entry entry about to be stored in the table
+     * @param changed whether the entry has to be saved by saveChanges()
+     * @return the entry
+     */
+    private Account link(Account entry, boolean changed) {
+        entry.setBank(this);
+        if (changed) {
+            markChanged(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Subscribes a listener to every account that is added, changed or removed from now on
+     * @param listener listener to add
+     */
+    public void addListener(AccountListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unsubscribes a listener
+     * @param listener listener to remove
+     */
+    public void removeListener(AccountListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tells every listener about an added or changed account
+     * @param account entry stored in the table
+     */
+    private void notifyUpdated(Account account) {
+        for (AccountListener listener : listeners) {
+            listener.accountUpdated(account);
+        }
+    }
+
+    /**
+     * Called by Account after it won or lost a game, so it is saved and re-ranked
+     * @param account account that changed
+     * @param won true if the account won the game
+     */
+    void resultRecorded(Account account, boolean won) {
+        // A clean account only has to log this game, a changed one is saved whole anyway
+        if (!account.isDirty()) {
+            account.setDirty(true);
+            account.setOnlyGames(true);
+            changes.add(account);
+        }
+        account.countNewGame(won);
+        notifyUpdated(account);
+        for (AccountListener listener : listeners) {
+            listener.gamePlayed(account, won);
+        }
+    }
+
+    /**
+     * Records that an account of this map was added, replaced or removed since the last save, so it has to be
+     * saved whole
+     * @param account account that changed
+     */
+    void markChanged(Account account) {
+        account.setOnlyGames(false);
+        if (!account.isDirty()) {
+            account.setDirty(true);
+            changes.add(account);
+        }
+    }
+
+    /**
+     * Returns copies of every account that was added, updated or removed since the last save and forgets them.
+     * Removed accounts come back with isRemoved() set. A copy whose only change is finished games also carries
+     * those games, so the ResultLog can log them instead of the whole account. The copies can be written out
+     * while the map keeps changing.
+     * @return changed accounts, oldest change first
+     */
+    public Account[] takeChanges() {
+        Account[] out = new Account[changes.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = changes.get(i).takeChange();
+        }
+        changes.clear();
+        return out;
+    }
+
+    /**
+     * Writes only the accounts that were added, updated or removed since the last save. Removed accounts are
+     * deleted from the store. The cost is proportional to the number of changes, not to the size of the map.
+     * @param store store to write to
+     * @return number of records written
+     * @throws IOException if the store cannot be written
+     */
+    public int saveChanges(AccountStore store) throws IOException {
+        Account[] changed = takeChanges();
+        for (Account account : changed) {
+            store.apply(account);
+        }
+        return changed.length;
+    }
+
+    /**
+     * Forgets every pending change without saving it, for changes that are already saved somewhere else
+     * (for example accounts that were just replayed from the ResultLog).
+     */
+    public void forgetChanges() {
+        for (Account account : changes) {
+            account.forgetChange();
+        }
+        changes.clear();
+    }
+
+    /**
+     * Returns the number of accounts changed since the last save
+     * @return number of pending changes
+     */
+    public int changeCount() {
+        return changes.size();
+    }
+
+    /**
+     * Backs the map with a source. Accounts missing from the table are read from the source the first time
+     * checkValue(), getAccount() or remove() asks for them, so the map can be used before anything is loaded.
+     * The username filter is rebuilt in bulk from the hashes of the source.
+     * size() and getTable() only cover the accounts read so far, call loadAll() before using them on every account.
+     * @param source where missing accounts are read from, or null to stop reading from a source
+     */
+    public void setSource(AccountSource source) {
+        this.source = source;
+        rebuildFilter();
+    }
+
+    /**
+     * Reads every account of the source that is not in the table yet. Accounts already in the table
+     * (including removed ones) are newer than the source and are kept.
+     */
+    public void loadAll() {
+        if (source == null) {
+            return;
+        }
+        finishResize();
+        ensureCapacity(size + source.size());
+        source.forEachAccount(account -> {
+            if (!isLoaded(account.getUsername())) {
+                insert(account, false, false);
+            }
+        });
+    }
+
+    /**
+     * Visits every live account, those in the table and those of the source that have not been read yet.
+     * Accounts of the source are read one at a time and not added to the table, so the map does not grow.
+     * @param consumer receives each account
+     */
+    public void forEachAccount(Consumer<Account> consumer) {
+        finishResize();
+        for (Account account : table) {
+            if (account != null && !account.isRemoved()) {
+                consumer.accept(account);
+            }
+        }
+        if (source != null) {
+            source.forEachAccount(account -> {
+                if (!isLoaded(account.getUsername())) {
+                    consumer.accept(account);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads one account from the source and adds it to the table
+     * @param key username of the account
+     * @return the account now in the table, or null if there is no source or it does not hold the account
+     */
+    private Account faultIn(String key) {
+        if (source == null) {
+            return null;
+        }
+        Account stored = source.load(key);
+        if (stored == null) {
+            return null;
+        }
+        insert(stored, false, false);
+        return stored;
+    }
+
+    /**
+     * Checks whether the probe that ended at index stopped on a DEL marker for key
+     * @param index index the probe stopped at
+     * @param key username that was searched for
+     * @return true if key was removed from the map
+     */
+    private boolean isRemovedKey(int index, String key) {
+        return table[index] != null && table[index].isRemoved() && table[index].getUsername().equals(key);
+    }
+
+    /**
+     * Checks whether the table has an entry (live or removed) for a username without reading from the source
+     * @param key username to look for
+     * @return true if the table has an entry for key
+     */
+    private boolean isLoaded(String key) {
+        int index = Math.abs(key.hashCode() % table.length);
+        int probed = 0;
+        while (table[index] != null && probed < table.length) {
+            if (table[index].getUsername().equals(key)) {
+                return true;
+            }
+            probed++;
+            index = (index + 1) % table.length;
+        }
+        return false;
+    }
+
     /**
      * Resize the backing table to length.
      *
@@ -237,56 +801,159 @@ public class AccountBank {
      *                                            map
      */
     public void resizeBackingTable(int length) {
+        finishResize();
         if (length < size) {
             throw new IllegalArgumentException("Cannot resize to length smaller than HashMap size");
         }
         Account[] temp = table;
-        int newSize = 0;
         table = new Account[length];
+        removed = 0;
         for (Account element : temp) {
-            // Breaks for loop if we have added all the elements to the new array
-            if (newSize == size) {
-                break;
-            }
-            // if element is not null and not removed we should add it to the hashmap.
-            if (element != null && !element.isRemoved()) {
-                int curr = Math.abs(element.getUsername().hashCode() % table.length);
-                int delIndex = -1;
-
-                while (table[curr] != null) {
-                    if (element.isRemoved() && delIndex < 0) {
-                        delIndex = curr;
-                    } else {
-                        curr = Math.abs((curr + 1) % table.length);
-                    }
-                }
-                if (delIndex < 0) {
-                    table[curr] = element;
-                    newSize++;
-                } else {
-                    table[delIndex] = element;
-                }
+            // if element is not null and not a dropped DEL marker we should add it to the hashmap.
+            if (element != null && keeps(element)) {
+                place(element);
             }
         }
+        keptRemoved = removed;
 
     }
 
     /**
      * Clears the map.
      * Resets the table to a new array of the INITIAL_CAPACITY and resets the
-     * size.
+     * size. Also detaches the source and forgets unsaved changes, so the map is
+     * empty afterwards instead of faulting the source's accounts back in.
      * Must be O(1).
      */
     public void clear() {
         size = 0;
+        removed = 0;
+        keptRemoved = 0;
         table = new Account[INITIAL_CAPACITY];
+        oldTable = null;
+        source = null;
+        changes.clear();
+        filter = new UsernameFilter((int) (INITIAL_CAPACITY * MAX_LOAD_FACTOR));
+        for (AccountListener listener : listeners) {
+            listener.accountsCleared();
+        }
+    }
+
+    /**
+     * Starts an incremental resize. The current table becomes the old table and is moved into a new table of
+     * length a few slots at a time by later operations.
+     * @param length new length of the backing table
+     */
+    private void startResize(int length) {
+        finishResize();
+        oldTable = table;
+        migrateIndex = 0;
+        table = new Account[length];
+        removed = 0;
+    }
+
+    /**
+     * Does a bounded amount of incremental resize work before an operation on key. The old entry of key is moved
+     * first, so the operation only has to look at the new table, then MIGRATE_STEP more old slots are moved.
+     * @param key username the operation is about to use
+     */
+    private void migrate(String key) {
+        if (oldTable == null) {
+            return;
+        }
+        int index = Math.abs(key.hashCode() % oldTable.length);
+        int probed = 0;
+        while (oldTable[index] != null && probed < oldTable.length) {
+            Account entry = oldTable[index];
+            if (keeps(entry) && entry.getUsername().equals(key)) {
+                if (!isLoaded(key)) {
+                    place(entry);
+                }
+                break;
+            }
+            probed++;
+            index = (index + 1) % oldTable.length;
+        }
+        migrateStep(MIGRATE_STEP);
+    }
+
+    /**
+     * Moves the next slots of the old table into the new table. Entries that were already moved on demand, or
+     * replaced or removed since, are skipped. Drops the old table once every slot has been moved.
+     * @param slots number of old slots to move
+     */
+    private void migrateStep(int slots) {
+        int end = Math.min(oldTable.length, migrateIndex + slots);
+        for (; migrateIndex < end; migrateIndex++) {
+            Account entry = oldTable[migrateIndex];
+            if (entry != null && keeps(entry) && !isLoaded(entry.getUsername())) {
+                place(entry);
+            }
+        }
+        if (migrateIndex == oldTable.length) {
+            oldTable = null;
+            keptRemoved = removed;
+        }
     }
 
     /**
-     * Returns the table of the map.
+     * Finishes an incremental resize that is in progress
+     */
+    private void finishResize() {
+        if (oldTable != null) {
+            migrateStep(oldTable.length);
+        }
+    }
+
+    /**
+     * Puts an entry moved from the old table into the first empty slot of its probe sequence
+     * @param entry entry being moved, kept as the same object
+     */
+    private void place(Account entry) {
+        int curr = Math.abs(entry.getUsername().hashCode() % table.length);
+        while (table[curr] != null) {
+            curr = (curr + 1) % table.length;
+        }
+        table[curr] = entry;
+        if (entry.isRemoved()) {
+            removed++;
+        }
+    }
+
+    /**
+     * Checks whether insert() can put a different account in the slot of an entry. DEL markers are reused,
+     * except while there is a source, for the same reason keeps() moves them.
+     * @param entry entry of the table
+     * @return true if the slot can be reused
+     */
+    private boolean reusable(Account entry) {
+        return entry.isRemoved() && source == null;
+    }
+
+    /**
+     * Checks whether a resize has to move an entry. DEL markers are dropped, except for accounts the source
+     * still holds: without the marker they would be read back in.
+     * @param entry entry of the old table
+     * @return true if the entry is moved to the new table
+     */
+    private boolean keeps(Account entry) {
+        return !entry.isRemoved() || source != null && source.contains(entry.getUsername());
+    }
+
+    /**
+     * Returns whether an incremental resize is in progress
+     * @return true if the old table is still being moved
+     */
+    public boolean isResizing() {
+        return oldTable != null;
+    }
+
+    /**
+     * Returns the table of the map. Finishes an incremental resize first so every account is in it.
      * @return the table of the map
      */
     public Account[] getTable() {
+        finishResize();
         return table;
     }
 
@@ -305,7 +972,7 @@ public class AccountBank {
     @Override
     public String toString() {
         String out = "----------------------------------\nAccounts:\n----------------------------------\n";
-        for (Account account : table) {
+        for (Account account : getTable()) {
             if (account == null) {
                 continue;
             }
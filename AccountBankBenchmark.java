@@ -0,0 +1,116 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput benchmark of ConcurrentAccountBank against AccountBank.
+ * AccountBank is not thread safe, so with several threads every call goes through one shared lock,
+ * which is what hosting several sessions with it would take.
+ *
+ * Run with: java AccountBankBenchmark [accounts] [threads] [seconds]
+ */
+public class AccountBankBenchmark {
+
+    // Out of every 100 operations this many are logins, the rest are game results
+    private static final int READ_PERCENT = 90;
+
+    /**
+     * Runs the benchmark
+     * @param args number of accounts, number of threads and seconds per run
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        String[] usernames = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            usernames[i] = "user" + i;
+        }
+
+        System.out.println(accounts + " accounts, " + READ_PERCENT + "% logins, " + seconds + "s per run");
+        for (int t = 1; t <= threads; t *= 2) {
+            AccountBank bank = new AccountBank(AccountBank.capacityFor(accounts * 2));
+            ConcurrentAccountBank concurrentBank = new ConcurrentAccountBank();
+            for (String username : usernames) {
+                bank.put(new Account(username, username));
+                concurrentBank.put(new Account(username, username));
+            }
+            Object lock = new Object();
+
+            long locked = run(t, seconds, usernames, (username, read) -> {
+                synchronized (lock) {
+                    if (read) {
+                        bank.checkValue(username, username);
+                    } else {
+                        bank.getAccount(new Account(username, username)).win();
+                    }
+                }
+            });
+            long concurrent = run(t, seconds, usernames, (username, read) -> {
+                if (read) {
+                    concurrentBank.checkValue(username, username);
+                } else {
+                    concurrentBank.recordResult(username, true);
+                }
+            });
+            System.out.printf("%2d threads: AccountBank %,12d ops/s   ConcurrentAccountBank %,12d ops/s%n",
+                    t, locked / seconds, concurrent / seconds);
+        }
+    }
+
+    /**
+     * Runs the operation on several threads for a fixed time
+     * @param threads number of threads
+     * @param seconds how long to run
+     * @param usernames usernames to pick from
+     * @param operation operation to run
+     * @return total number of operations done
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static long run(int threads, int seconds, String[] usernames, Operation operation)
+            throws InterruptedException {
+        AtomicLong total = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int i = 0; i < threads; i++) {
+            int seed = i;
+            new Thread(() -> {
+                long count = 0;
+                int random = seed * 0x9E3779B9 + 1;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while ((count & 1023) != 0 || System.nanoTime() < end) {
+                    // xorshift, so the benchmark does not measure Math.random()
+                    random ^= random << 13;
+                    random ^= random >>> 17;
+                    random ^= random << 5;
+                    String username = usernames[(random & Integer.MAX_VALUE) % usernames.length];
+                    operation.run(username, (random >>> 8) % 100 < READ_PERCENT);
+                    count++;
+                }
+                total.addAndGet(count);
+                done.countDown();
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        return total.get();
+    }
+
+    /**
+     * One benchmarked operation
+     */
+    private interface Operation {
+        /**
+         * Runs the operation
+         * @param username username to use
+         * @param read true for a login, false for a game result
+         */
+        void run(String username, boolean read);
+    }
+}
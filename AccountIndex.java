@@ -0,0 +1,141 @@
+import java.util.function.IntPredicate;
+
+/**
+ * Compact index from username hash to record number, stored in two parallel int arrays instead of one
+ * object per account. Several usernames can share a hash, so lookups ask the caller to confirm each candidate
+ * record. Implemented as a Linear Probing HashMap with a power of two capacity.
+ */
+public class AccountIndex {
+
+    /**
+     * The initial capacity of the index when created with the default constructor.
+     */
+    public static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The max load factor of the index, counting DEL markers.
+     */
+    public static final double MAX_LOAD_FACTOR = 0.67;
+
+    // Values of slots that are not records
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private int[] hashes;
+    // Record number + 1, so that a zeroed array is empty
+    private int[] slots;
+    private int size;
+    private int used;
+
+    /**
+     * Constructs a new index
+     */
+    public AccountIndex() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs a new index sized for expectedSize records
+     * @param expectedSize number of records expected in the index
+     */
+    public AccountIndex(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (expectedSize >= capacity * MAX_LOAD_FACTOR) {
+            capacity *= 2;
+        }
+        hashes = new int[capacity];
+        slots = new int[capacity];
+    }
+
+    /**
+     * Adds a record. The caller makes sure the username is not indexed yet.
+     * @param hash hash of the username
+     * @param slot record number
+     */
+    public void put(int hash, int slot) {
+        if (used + 1 > slots.length * MAX_LOAD_FACTOR) {
+            resize(size + 1 > slots.length / 2 ? slots.length * 2 : slots.length);
+        }
+        int mask = slots.length - 1;
+        int index = Hashing.mix(hash) & mask;
+        while (slots[index] > EMPTY) {
+            index = (index + 1) & mask;
+        }
+        if (slots[index] == EMPTY) {
+            used++;
+        }
+        hashes[index] = hash;
+        slots[index] = slot + 1;
+        size++;
+    }
+
+    /**
+     * Finds the record of a username
+     * @param hash hash of the username
+     * @param matches confirms whether a candidate record holds the username
+     * @return record number, or -1 if the username is not indexed
+     */
+    public int find(int hash, IntPredicate matches) {
+        int mask = slots.length - 1;
+        int index = Hashing.mix(hash) & mask;
+        // Only records with the same hash are handed to the caller
+        while (slots[index] != EMPTY) {
+            if (slots[index] > EMPTY && hashes[index] == hash && matches.test(slots[index] - 1)) {
+                return slots[index] - 1;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a record by marking its slot with a DEL marker
+     * @param hash hash of the username
+     * @param slot record number
+     * @return true if the record was indexed
+     */
+    public boolean remove(int hash, int slot) {
+        int mask = slots.length - 1;
+        int index = Hashing.mix(hash) & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == slot + 1) {
+                slots[index] = REMOVED;
+                size--;
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of records in the index
+     * @return size of the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Rehashes every record into new arrays, dropping the DEL markers
+     * @param capacity new capacity, a power of two
+     */
+    private void resize(int capacity) {
+        int[] oldHashes = hashes;
+        int[] oldSlots = slots;
+        hashes = new int[capacity];
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] > EMPTY) {
+                int index = Hashing.mix(oldHashes[i]) & mask;
+                while (slots[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                hashes[index] = oldHashes[i];
+                slots[index] = oldSlots[i];
+            }
+        }
+        used = size;
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Gets told about every change to the accounts of an AccountBank, for structures that have to stay in step with it
+ * without scanning the whole bank.
+ */
+public interface AccountListener {
+    /**
+     * Called after an account was added, replaced, read from the source, or won or lost a game
+     * @param account - the entry now stored in the bank
+     */
+    void accountUpdated(Account account);
+
+    /**
+     * Called after an account was removed
+     * @param account - the removed entry
+     */
+    void accountRemoved(Account account);
+
+    /**
+     * Called after every account was cleared from the bank
+     */
+    void accountsCleared();
+
+    /**
+     * Called after an account won or lost a game, right after accountUpdated(). Only needed by listeners that count
+     * games rather than rank lifetime totals, so it does nothing by default.
+     * @param account - the entry that played
+     * @param won - true if it won the game
+     */
+    default void gamePlayed(Account account, boolean won) {
+    }
+}
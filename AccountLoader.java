@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel loader for account files in the space separated text format (username password wins losses).
+ * The file is split into line aligned chunks that are mapped and parsed byte by byte on a ForkJoin pool.
+ * The parser never splits lines into Strings, only the username and password Strings of each Account are created.
+ * Once every chunk is parsed the AccountBank is created at its final capacity, so nothing is rehashed while loading,
+ * and the parsed Accounts become the entries of the bank without being copied.
+ */
+public class AccountLoader {
+
+    // Chunks smaller than this are not worth a task of their own
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    // A single mapping cannot be larger than 2GB, keep chunks well under that
+    private static final long MAX_CHUNK_BYTES = 1 << 30;
+
+    /**
+     * Loads every account of a text file into a new, presized AccountBank.
+     * Later lines replace earlier lines with the same username, like repeated put() calls would.
+     * @param fileName - name of the text file
+     * @return AccountBank holding every account of the file
+     * @throws IOException if the file cannot be read
+     * @throws java.lang.IllegalArgumentException if a line is not a valid account
+     */
+    public static AccountBank load(String fileName) throws IOException {
+        return load(fileName, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads every account of a text file into a new, presized AccountBank using the given pool.
+     * @param fileName - name of the text file
+     * @param pool - pool to parse the chunks on
+     * @return AccountBank holding every account of the file
+     * @throws IOException if the file cannot be read
+     * @throws java.lang.IllegalArgumentException if a line is not a valid account
+     */
+    public static AccountBank load(String fileName, ForkJoinPool pool) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long[] bounds = chunkBounds(channel, pool.getParallelism());
+
+            // Parse every chunk in parallel
+            ArrayList<ChunkParser> parsers = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                parsers.add(new ChunkParser(channel, bounds[i], bounds[i + 1]));
+            }
+            for (ChunkParser parser : parsers) {
+                pool.execute(parser);
+            }
+            int records = 0;
+            for (ChunkParser parser : parsers) {
+                records += parser.join().length;
+            }
+
+            // Presize from the record count, then hand the parsed accounts over in file order without copying them
+            AccountBank bank = new AccountBank(AccountBank.capacityFor(records));
+            for (ChunkParser parser : parsers) {
+                bank.putAllClean(Arrays.asList(parser.join()));
+            }
+            return bank;
+        } catch (RuntimeException e) {
+            // Parsing errors come back wrapped by the pool
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Splits the file into chunks that each start right after a line break
+     * @param channel - channel of the file
+     * @param parallelism - parallelism of the pool
+     * @return start offsets of every chunk followed by the file size
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] chunkBounds(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        int chunks = (int) Math.max(size / MAX_CHUNK_BYTES + 1,
+                Math.min(parallelism * 4L, size / MIN_CHUNK_BYTES));
+        long[] bounds = new long[chunks + 1];
+        int count = 1;
+        ByteBuffer probe = ByteBuffer.allocate(256);
+        for (int i = 1; i < chunks; i++) {
+            long position = Math.max(size * i / chunks, bounds[count - 1]);
+            // Move forward to the byte after the next line break
+            boolean found = false;
+            while (!found && position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                for (int j = 0; j < read; j++) {
+                    if (probe.get(j) == '\n') {
+                        position += j + 1;
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    position += read;
+                }
+            }
+            if (position < size && position > bounds[count - 1]) {
+                bounds[count++] = position;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Parses one line aligned chunk of the file
+     */
+    private static class ChunkParser extends RecursiveTask<Account[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        /**
+         * Creates a parser for the bytes [start, end) of the file
+         * @param channel - channel of the file
+         * @param start - first byte of the chunk, always the start of a line
+         * @param end - end of the chunk, always the start of a line or the end of the file
+         */
+        ChunkParser(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Maps the chunk and parses every line of it
+         * @return accounts of the chunk in file order
+         */
+        @Override
+        protected Account[] compute() {
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            int limit = buffer.limit();
+            Account[] accounts = new Account[Math.max(16, limit / 24)];
+            int count = 0;
+            byte[] field = new byte[AccountStore.FIELD_BYTES * 4];
+            int position = 0;
+
+            while (position < limit) {
+                // Skip blank lines
+                byte b = buffer.get(position);
+                if (b == '\n' || b == '\r') {
+                    position++;
+                    continue;
+                }
+
+                // Username and password are copied once into a reused scratch array
+                int usernameLength = 0;
+                while (position < limit && (b = buffer.get(position)) != ' ' && b != '\n') {
+                    field = grow(field, usernameLength);
+                    field[usernameLength++] = b;
+                    position++;
+                }
+                String username = new String(field, 0, usernameLength, StandardCharsets.UTF_8);
+                position = expectSpace(buffer, position, limit);
+
+                int passwordLength = 0;
+                while (position < limit && (b = buffer.get(position)) != ' ' && b != '\n') {
+                    field = grow(field, passwordLength);
+                    field[passwordLength++] = b;
+                    position++;
+                }
+                String password = new String(field, 0, passwordLength, StandardCharsets.UTF_8);
+                position = expectSpace(buffer, position, limit);
+
+                // Wins and losses are parsed straight from the bytes
+                int wins = 0;
+                int digits = 0;
+                while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+                    wins = wins * 10 + (b - '0');
+                    digits++;
+                    position++;
+                }
+                position = expectSpace(buffer, position, limit);
+
+                int losses = 0;
+                while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+                    losses = losses * 10 + (b - '0');
+                    digits++;
+                    position++;
+                }
+                if (digits == 0 || usernameLength == 0 || passwordLength == 0) {
+                    throw new IllegalArgumentException("Malformed account record at byte " + (start + position));
+                }
+
+                // Move past the end of the line
+                while (position < limit && buffer.get(position) != '\n') {
+                    position++;
+                }
+                position++;
+
+                if (count == accounts.length) {
+                    accounts = Arrays.copyOf(accounts, count * 2);
+                }
+                accounts[count++] = new Account(username, password, wins, losses);
+            }
+            return Arrays.copyOf(accounts, count);
+        }
+
+        /**
+         * Checks that the parser is on a field separator and moves past it
+         * @param buffer - mapped chunk
+         * @param position - current position
+         * @param limit - end of the chunk
+         * @return position of the next field
+         */
+        private int expectSpace(ByteBuffer buffer, int position, int limit) {
+            if (position >= limit || buffer.get(position) != ' ') {
+                throw new IllegalArgumentException("Malformed account record at byte " + (start + position));
+            }
+            return position + 1;
+        }
+
+        /**
+         * Doubles the scratch array when a field does not fit
+         * @param field - scratch array
+         * @param length - bytes used so far
+         * @return array with room for one more byte
+         */
+        private static byte[] grow(byte[] field, int length) {
+            return length < field.length ? field : Arrays.copyOf(field, field.length * 2);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Saves AccountBank changes on a background thread so that the end of a game never waits on the disk.
+ *
+ * submit() takes copies of the changed accounts (AccountBank.takeChanges()), which costs as much as the number of
+ * changes, and puts them in the front buffer. The writer thread swaps the front and back buffers, folds the changes
+ * of each account into its newest one and logs them to the ResultLog with one fsync. Saves submitted while a write
+ * is in flight pile up in the front buffer and go out together in the next write.
+ */
+public class AccountPersistence implements Runnable {
+    private final AccountBank bank;
+    private final ResultLog log;
+    private final Thread writer;
+
+    // Changes waiting to be written, and the buffer the writer is currently writing
+    private ArrayList<Account> front;
+    private ArrayList<Account> back;
+    private long submitted;
+    private long written;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Creates the persistence service and starts its writer thread
+     * @param bank - AccountBank whose changes are saved
+     * @param log - log the changes are written to
+     */
+    public AccountPersistence(AccountBank bank, ResultLog log) {
+        this.bank = bank;
+        this.log = log;
+        front = new ArrayList<>();
+        back = new ArrayList<>();
+        writer = new Thread(this, "account-persistence");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Snapshots the changes of the AccountBank and hands them to the writer thread. Does not wait for the disk.
+     * Must be called by the thread that owns the AccountBank.
+     * @throws java.lang.IllegalStateException if the service has been closed
+     */
+    public void submit() {
+        Account[] changes = bank.takeChanges();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Cannot submit to closed persistence");
+            }
+            if (changes.length == 0) {
+                return;
+            }
+            for (Account account : changes) {
+                front.add(account);
+            }
+            submitted++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every save submitted before this call is on disk
+     * @throws IOException if the writer could not write the changes
+     */
+    public synchronized void flush() throws IOException {
+        long target = submitted;
+        while (written < target && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Flushes outstanding saves and stops the writer thread. Call before the program exits.
+     * @throws IOException if the writer could not write the changes
+     */
+    public void close() throws IOException {
+        flush();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer loop. Swaps the buffers, coalesces the batch and writes it, until closed.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            long batch;
+            synchronized (this) {
+                while (front.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (front.isEmpty()) {
+                    return;
+                }
+                // Swap buffers so submit() can keep filling the front one
+                ArrayList<Account> temp = back;
+                back = front;
+                front = temp;
+                batch = submitted;
+            }
+
+            // One change per account is written, the newest one with the games of the older ones added to it
+            LinkedHashMap<String, Account> newest = new LinkedHashMap<>();
+            for (Account account : back) {
+                Account older = newest.remove(account.getUsername());
+                if (older != null) {
+                    account.absorb(older);
+                }
+                newest.put(account.getUsername(), account);
+            }
+            back.clear();
+
+            try {
+                log.logChanges(newest.values());
+                synchronized (this) {
+                    written = batch;
+                    notifyAll();
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                synchronized (this) {
+                    failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+}
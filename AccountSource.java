@@ -0,0 +1,45 @@
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Somewhere accounts can be read from one at a time. An AccountBank backed by a source only holds the accounts
+ * that have been asked for and reads every other account from the source the first time it is needed.
+ */
+public interface AccountSource {
+    /**
+     * Reads one account
+     * @param username - username of the account
+     * @return the account, or null if the source does not hold it
+     */
+    Account load(String username);
+
+    /**
+     * Reads every account of the source
+     * @param consumer - receives each account
+     */
+    void forEachAccount(Consumer<Account> consumer);
+
+    /**
+     * Checks whether the source holds an account, without reading it if the source can avoid that
+     * @param username - username of the account
+     * @return true if the source holds the account
+     */
+    default boolean contains(String username) {
+        return load(username) != null;
+    }
+
+    /**
+     * Returns the number of accounts in the source
+     * @return number of accounts
+     */
+    int size();
+
+    /**
+     * Reads the String.hashCode() of every username of the source, used to fill a UsernameFilter.
+     * Sources that store the hashes should override this so no Accounts are created.
+     * @param consumer - receives each hash
+     */
+    default void forEachUsernameHash(IntConsumer consumer) {
+        forEachAccount(account -> consumer.accept(account.getUsername().hashCode()));
+    }
+}
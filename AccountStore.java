@@ -0,0 +1,605 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Binary account file made of fixed size records. The file is opened with FileChannel.map so that a finished game
+ * only rewrites the 8 bytes holding the wins and losses of that one account instead of the whole file.
+ *
+ * A single MappedByteBuffer is limited to 2 GB, so the header and the records are mapped separately and the records
+ * are mapped in pages of PAGE_RECORDS records, like OffHeapAccountBank. Record offsets are computed as longs, so the
+ * store grows up to Integer.MAX_VALUE records.
+ *
+ * Layout of the file:
+ * Header (32 bytes): magic, format version, record count, unused, stamp (bumped on every change),
+ *                    generation of the last result log folded into this file
+ * Record (80 bytes): username hash, flags, username length, password length, unused,
+ *                    username (32 bytes), password (32 bytes), wins, losses
+ */
+public class AccountStore implements AccountSource {
+
+    /**
+     * Marks the start of every account store file ("SSHB")
+     */
+    public static final int MAGIC = 0x53534842;
+
+    /**
+     * Version of the record layout written by this class
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Max number of UTF-8 bytes that can be stored for a username or a password
+     */
+    public static final int FIELD_BYTES = 32;
+
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 80;
+
+    // Offsets inside the header
+    private static final int COUNT_OFFSET = 8;
+    private static final int STAMP_OFFSET = 16;
+    private static final int LOG_GENERATION_OFFSET = 24;
+
+    // Offsets inside a record
+    static final int HASH_OFFSET = 0;
+    static final int FLAGS_OFFSET = 4;
+    static final int USERNAME_LENGTH_OFFSET = 5;
+    static final int PASSWORD_LENGTH_OFFSET = 6;
+    static final int USERNAME_OFFSET = 8;
+    static final int PASSWORD_OFFSET = USERNAME_OFFSET + FIELD_BYTES;
+    static final int COUNTER_OFFSET = PASSWORD_OFFSET + FIELD_BYTES;
+
+    // Record flags
+    static final byte FLAG_USED = 1;
+    static final byte FLAG_REMOVED = 2;
+
+    private static final int INITIAL_RECORDS = 64;
+    // Records per mapped page (80 MB)
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_RECORDS = 1 << PAGE_BITS;
+
+    private final String fileName;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] pages;
+    private int capacity;
+    private int recordCount;
+    // Username hash -> record number so that an update goes straight to its slot
+    private AccountIndex slots;
+
+    /**
+     * Opens (or creates) the account store. Use open() or importText() instead of calling this directly.
+     * @param fileName - name of the binary store file
+     * @throws IOException if the file cannot be opened or is not an account store
+     */
+    private AccountStore(String fileName) throws IOException {
+        this.fileName = fileName;
+        file = new RandomAccessFile(fileName, "rw");
+        channel = file.getChannel();
+
+        // Brand new file, write a header before mapping the records
+        if (channel.size() == 0) {
+            slots = new AccountIndex();
+            map(INITIAL_RECORDS);
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT_VERSION);
+            header.putInt(COUNT_OFFSET, 0);
+            header.putLong(STAMP_OFFSET, 0L);
+            header.putLong(LOG_GENERATION_OFFSET, 0L);
+            recordCount = 0;
+            return;
+        }
+
+        long records = Math.max(0, (channel.size() - HEADER_SIZE) / RECORD_SIZE);
+        map((int) Math.min(Math.max(records, INITIAL_RECORDS), Integer.MAX_VALUE));
+        if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+            close();
+            throw new IOException(fileName + " is not an account store");
+        }
+        recordCount = header.getInt(COUNT_OFFSET);
+
+        // Rebuild the hash -> slot index. Only the hash and flags of each record are read, no Strings are created
+        slots = new AccountIndex(recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            if (flags(i) == FLAG_USED) {
+                slots.put(hash(i), i);
+            }
+        }
+    }
+
+    /**
+     * Opens an existing account store, or creates an empty one if the file does not exist yet.
+     * @param fileName - name of the binary store file
+     * @return the opened store
+     * @throws IOException if the file cannot be opened or is not an account store
+     */
+    public static AccountStore open(String fileName) throws IOException {
+        return new AccountStore(fileName);
+    }
+
+    /**
+     * One time importer from the old space separated text format (username password wins losses).
+     * If the text file does not exist an empty store is created.
+     * @param textFileName - name of the old text file
+     * @param storeFileName - name of the binary store file to create
+     * @return the new store holding every account of the text file
+     * @throws IOException if either file cannot be read or written
+     */
+    public static AccountStore importText(String textFileName, String storeFileName) throws IOException {
+        AccountStore store = new AccountStore(storeFileName);
+        if (!new File(textFileName).exists()) {
+            return store;
+        }
+
+        // Parse the text file in parallel, then append the records in table order
+        for (Account account : AccountLoader.load(textFileName).getTable()) {
+            if (account != null) {
+                store.save(account);
+            }
+        }
+        store.force();
+        return store;
+    }
+
+    /**
+     * Adds every live account of the store to the AccountBank. The bank is grown once up front and keeps the
+     * Accounts read from the records without copying them.
+     * @param bank - AccountBank to fill
+     */
+    public void loadInto(AccountBank bank) {
+        bank.ensureCapacity(bank.size() + size());
+        forEachAccount(bank::putOwnedClean);
+    }
+
+    /**
+     * Reads every live account of the store in record order
+     * @param consumer - receives each account
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> consumer) {
+        for (int i = 0; i < recordCount; i++) {
+            if (flags(i) == FLAG_USED) {
+                consumer.accept(readAccount(i));
+            }
+        }
+    }
+
+    /**
+     * Reads the hash of every live account straight from the records, no Strings are created
+     * @param consumer - receives each hash
+     */
+    @Override
+    public void forEachUsernameHash(IntConsumer consumer) {
+        for (int i = 0; i < recordCount; i++) {
+            if (flags(i) == FLAG_USED) {
+                consumer.accept(hash(i));
+            }
+        }
+    }
+
+    /**
+     * Reads one account, used by an AccountBank to fault in records lazily
+     * @param username - username of the account
+     * @return the account, or null if it is not stored
+     */
+    @Override
+    public Account load(String username) {
+        int slot = find(username);
+        return slot < 0 ? null : readAccount(slot);
+    }
+
+    /**
+     * Returns the stored copy of an account
+     * @param username - username of the account
+     * @return account read from its record
+     * @throws java.util.NoSuchElementException if the username is not in the store
+     */
+    public Account getAccount(String username) {
+        int slot = find(username);
+        if (slot < 0) {
+            throw new NoSuchElementException("Account is not in store");
+        }
+        return readAccount(slot);
+    }
+
+    /**
+     * Saves an account. An existing account only has its 8 byte win/loss slot rewritten in place,
+     * a new account is appended as a new record.
+     * @param account - account to save
+     * @throws IOException if the file has to grow and cannot be remapped
+     * @throws java.lang.IllegalArgumentException if account is null or its username or password do not fit
+     * @throws java.lang.IllegalStateException if a new account has to be appended to a store that already holds
+     *     Integer.MAX_VALUE records
+     */
+    public void save(Account account) throws IOException {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        int slot = find(account.getUsername());
+        if (slot >= 0) {
+            // Password changes need the full record, otherwise only the counters change
+            if (!readPassword(slot).equals(account.getPassword())) {
+                writeRecord(slot, account);
+            } else {
+                writeCounters(slot, account.getWins(), account.getLosses());
+            }
+        } else {
+            append(account);
+        }
+        bumpStamp();
+    }
+
+    /**
+     * Writes one change taken from AccountBank.takeChanges(). Removed accounts are deleted from the store,
+     * every other account is saved.
+     * @param account - changed account
+     * @throws IOException if the file has to grow and cannot be remapped
+     */
+    public void apply(Account account) throws IOException {
+        if (!account.isRemoved()) {
+            save(account);
+        } else if (contains(account.getUsername())) {
+            remove(account.getUsername());
+        }
+    }
+
+    /**
+     * Marks the record of an account as removed. The slot is not reused until purgeRemoved() is called.
+     * @param username - username of the account to remove
+     * @throws java.util.NoSuchElementException if the username is not in the store
+     */
+    public void remove(String username) {
+        int slot = find(username);
+        if (slot < 0) {
+            throw new NoSuchElementException("Account is not in store");
+        }
+        slots.remove(username.hashCode(), slot);
+        page(slot).put(offset(slot) + FLAGS_OFFSET, FLAG_REMOVED);
+        bumpStamp();
+    }
+
+    /**
+     * Returns whether the store holds an account with this username
+     * @param username - username to look for
+     * @return true if the account is stored
+     */
+    @Override
+    public boolean contains(String username) {
+        return find(username) >= 0;
+    }
+
+    /**
+     * Returns the number of live accounts in the store
+     * @return number of live accounts
+     */
+    @Override
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Returns the number of records of removed accounts that are still in the file
+     * @return number of removed records
+     */
+    public int removedCount() {
+        return recordCount - slots.size();
+    }
+
+    /**
+     * Purges the records of removed accounts. Live records are moved down over them in record order, the index
+     * is rebuilt and the file is truncated. Every live record may move, so only call this on a store that no other
+     * AccountStore has mapped.
+     * @return number of records purged
+     * @throws IOException if the file cannot be remapped or truncated
+     */
+    public int purgeRemoved() throws IOException {
+        int purged = removedCount();
+        if (purged == 0) {
+            return 0;
+        }
+        AccountIndex index = new AccountIndex(slots.size());
+        byte[] record = new byte[RECORD_SIZE];
+        int live = 0;
+        for (int i = 0; i < recordCount; i++) {
+            if (flags(i) == FLAG_USED) {
+                if (live != i) {
+                    page(i).get(offset(i), record);
+                    page(live).put(offset(live), record);
+                }
+                index.put(hash(live), live);
+                live++;
+            }
+        }
+        slots = index;
+        recordCount = live;
+        header.putInt(COUNT_OFFSET, recordCount);
+        bumpStamp();
+
+        // Map only the records that are left, then cut the file down to that size
+        map(Math.max(recordCount, INITIAL_RECORDS));
+        channel.truncate(HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        return purged;
+    }
+
+    /**
+     * Returns the stamp of the store. It changes every time an account is saved or removed.
+     * @return stamp of the store
+     */
+    public long getStamp() {
+        return header.getLong(STAMP_OFFSET);
+    }
+
+    /**
+     * Returns the generation of the last ResultLog segment that has been folded into this store
+     * @return folded log generation, 0 if no log has been folded yet
+     */
+    public long getLogGeneration() {
+        return header.getLong(LOG_GENERATION_OFFSET);
+    }
+
+    /**
+     * Records that every ResultLog segment up to generation has been folded into this store
+     * @param generation - generation of the last folded segment
+     */
+    public void setLogGeneration(long generation) {
+        header.putLong(LOG_GENERATION_OFFSET, generation);
+    }
+
+    /**
+     * Returns the name of the store file
+     * @return file name
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Forces every change made through the mapping onto the disk
+     */
+    public void force() {
+        for (MappedByteBuffer page : pages) {
+            page.force();
+        }
+        header.force();
+    }
+
+    /**
+     * Forces outstanding changes and closes the file
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        if (pages != null) {
+            force();
+        }
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * Appends a new record at the end of the file, growing the mapping if needed
+     * @param account - account to append
+     * @throws IOException if the file cannot be remapped
+     * @throws java.lang.IllegalStateException if the store already holds Integer.MAX_VALUE records
+     */
+    private void append(Account account) throws IOException {
+        if (recordCount == capacity) {
+            if (capacity == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Account store cannot hold more than " + Integer.MAX_VALUE
+                        + " records");
+            }
+            map((int) Math.min(capacity * 2L, Integer.MAX_VALUE));
+        }
+        int slot = recordCount;
+        writeRecord(slot, account);
+        recordCount++;
+        header.putInt(COUNT_OFFSET, recordCount);
+        slots.put(account.getUsername().hashCode(), slot);
+    }
+
+    /**
+     * Finds the record of a username by comparing the stored bytes of every record with the same hash
+     * @param username - username to look for
+     * @return record number, or -1 if the username is not stored
+     */
+    private int find(String username) {
+        byte[] key = username.getBytes(StandardCharsets.UTF_8);
+        return slots.find(username.hashCode(), slot -> {
+            MappedByteBuffer page = page(slot);
+            int offset = offset(slot);
+            if (page.get(offset + USERNAME_LENGTH_OFFSET) != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (page.get(offset + USERNAME_OFFSET + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Writes the full record of an account
+     * @param slot - record number
+     * @param account - account to write
+     */
+    private void writeRecord(int slot, Account account) {
+        byte[] username = encode(account.getUsername());
+        byte[] password = encode(account.getPassword());
+        MappedByteBuffer page = page(slot);
+        int offset = offset(slot);
+        page.putInt(offset + HASH_OFFSET, account.getUsername().hashCode());
+        page.put(offset + FLAGS_OFFSET, FLAG_USED);
+        page.put(offset + USERNAME_LENGTH_OFFSET, (byte) username.length);
+        page.put(offset + PASSWORD_LENGTH_OFFSET, (byte) password.length);
+        page.put(offset + USERNAME_OFFSET, username);
+        page.put(offset + PASSWORD_OFFSET, password);
+        writeCounters(slot, account.getWins(), account.getLosses());
+    }
+
+    /**
+     * Writes wins and losses as one 8 byte value so a result is a single in-place store
+     * @param slot - record number
+     * @param wins - wins of the account
+     * @param losses - losses of the account
+     */
+    private void writeCounters(int slot, int wins, int losses) {
+        page(slot).putLong(offset(slot) + COUNTER_OFFSET, ((long) wins << 32) | (losses & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Reads a full record back into an Account
+     * @param slot - record number
+     * @return account stored in the record
+     */
+    private Account readAccount(int slot) {
+        long counters = page(slot).getLong(offset(slot) + COUNTER_OFFSET);
+        return new Account(readUsername(slot), readPassword(slot), (int) (counters >>> 32), (int) counters);
+    }
+
+    /**
+     * Reads the username of a record
+     * @param slot - record number
+     * @return username
+     */
+    private String readUsername(int slot) {
+        return decode(slot, USERNAME_OFFSET, USERNAME_LENGTH_OFFSET);
+    }
+
+    /**
+     * Reads the password of a record
+     * @param slot - record number
+     * @return password
+     */
+    private String readPassword(int slot) {
+        return decode(slot, PASSWORD_OFFSET, PASSWORD_LENGTH_OFFSET);
+    }
+
+    /**
+     * Decodes a UTF-8 field of a record
+     * @param slot - record number
+     * @param fieldOffset - offset of the field inside the record
+     * @param lengthOffset - offset of the byte holding the length of the field
+     * @return decoded String
+     */
+    private String decode(int slot, int fieldOffset, int lengthOffset) {
+        MappedByteBuffer page = page(slot);
+        int offset = offset(slot);
+        byte[] bytes = new byte[page.get(offset + lengthOffset)];
+        page.get(offset + fieldOffset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether a username or password fits in its slot of a record. Callers that save accounts check their
+     * fields with this before logging them, so a record the store cannot hold never reaches the log.
+     * @param value - username or password
+     * @return true if value is not null and its UTF-8 form is at most FIELD_BYTES long
+     */
+    public static boolean fits(String value) {
+        return value != null && value.getBytes(StandardCharsets.UTF_8).length <= FIELD_BYTES;
+    }
+
+    /**
+     * Checks that both fields of an account fit in a record
+     * @param account - account to check
+     * @throws java.lang.IllegalArgumentException if the username or password is null or too long
+     */
+    public static void checkFields(Account account) {
+        if (!fits(account.getUsername()) || !fits(account.getPassword())) {
+            throw new IllegalArgumentException("Username or password cannot be null or longer than " + FIELD_BYTES
+                    + " bytes");
+        }
+    }
+
+    /**
+     * Encodes a field and checks that it fits in its slot
+     * @param value - username or password
+     * @return UTF-8 bytes of value
+     */
+    private static byte[] encode(String value) {
+        if (!fits(value)) {
+            throw new IllegalArgumentException("Username or password cannot be null or longer than " + FIELD_BYTES
+                    + " bytes");
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Increments the stamp in the header
+     */
+    private void bumpStamp() {
+        header.putLong(STAMP_OFFSET, header.getLong(STAMP_OFFSET) + 1);
+    }
+
+    /**
+     * (Re)maps the file so that it can hold records records. Full pages that are already mapped are kept, so
+     * growing only maps the last page again and the new ones.
+     * @param records - number of records the mapping should hold
+     * @throws IOException if the file cannot be mapped
+     */
+    private void map(int records) throws IOException {
+        if (header == null) {
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        } else {
+            force();
+        }
+        int pageCount = (int) (((long) records + PAGE_RECORDS - 1) >>> PAGE_BITS);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            long first = (long) i << PAGE_BITS;
+            long pageBytes = Math.min(PAGE_RECORDS, records - first) * RECORD_SIZE;
+            if (pages != null && i < pages.length && pages[i].capacity() == pageBytes) {
+                mapped[i] = pages[i];
+            } else {
+                mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + first * RECORD_SIZE, pageBytes);
+            }
+        }
+        pages = mapped;
+        capacity = records;
+    }
+
+    /**
+     * Returns the flag byte of a record
+     * @param slot - record number
+     * @return FLAG_USED or FLAG_REMOVED
+     */
+    private byte flags(int slot) {
+        return page(slot).get(offset(slot) + FLAGS_OFFSET);
+    }
+
+    /**
+     * Returns the username hash stored in a record
+     * @param slot - record number
+     * @return hash of the username
+     */
+    private int hash(int slot) {
+        return page(slot).getInt(offset(slot) + HASH_OFFSET);
+    }
+
+    /**
+     * Returns the page holding a record
+     * @param slot - record number
+     * @return mapped page
+     */
+    private MappedByteBuffer page(int slot) {
+        return pages[slot >>> PAGE_BITS];
+    }
+
+    /**
+     * Returns the byte offset of a record inside its page
+     * @param slot - record number
+     * @return offset inside the page
+     */
+    private static int offset(int slot) {
+        return (slot & (PAGE_RECORDS - 1)) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Random;
+
+/**
+ * The computer opponent of the console game as a DecisionProvider.
+ *
+ * On each turn it uses an item 3 times in 5, then keeps using items 1 time in 3, picking a random item it has.
+ * It stops early when it is out of items, when the opponent is already handcuffed, or when a Magnifying Glass
+ * has shown it the next bullet, which it then shoots at whoever it hurts. Otherwise it shoots a random seat.
+ */
+public class BasicAi implements DecisionProvider {
+    private final Random random;
+    // Turn this AI last acted in, and whether it still wants to use items in it
+    private int turn = -1;
+    private int choice;
+
+    /**
+     * Creates an AI with its own random numbers
+     */
+    public BasicAi() {
+        this(new Random());
+    }
+
+    /**
+     * Creates an AI
+     * @param random - random numbers for its choices
+     */
+    public BasicAi(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Picks the next action of the AI's seat
+     * @param game - game being played
+     * @param seat - seat of the AI
+     * @return an item to use, or a shot
+     */
+    @Override
+    public GameAction decide(GameEngine game, int seat) {
+        // AI has 3/5 chance to use item
+        if (game.getTurn() != turn) {
+            turn = game.getTurn();
+            choice = random.nextInt(5);
+        }
+        if (choice >= 2
+                // AI still has items to use
+                && game.getItemCount(seat) > 0
+                // AI is not handcuffed
+                && !game.isHandcuffed(seat)
+                // AI has not seen the next bullet (magnifying glass will force ai to make decision)
+                && !game.knowsNextBullet(seat)
+                // Opponent is also not handcuffed. This way AI doesn't double handcuff.
+                && !game.isHandcuffed(1 - seat)) {
+            // AI has 1/3 chance to use another item
+            choice = random.nextInt(3);
+            return randomItem(game, seat);
+        }
+        if (game.knowsNextBullet(seat)) {
+            return game.isNextBulletBlank(seat) ? GameAction.SHOOT_SELF : GameAction.SHOOT_OPPONENT;
+        }
+        return random.nextInt(2) == 0 ? GameAction.SHOOT_OPPONENT : GameAction.SHOOT_SELF;
+    }
+
+    /**
+     * Picks one of the item kinds the seat has, each kind equally likely
+     * @param game - game being played
+     * @param seat - seat of the AI
+     * @return item action
+     */
+    private GameAction randomItem(GameEngine game, int seat) {
+        int kinds = 0;
+        for (int i = 0; i < ItemRack.ITEM_KINDS; i++) {
+            if (game.getItemCount(seat, GameAction.useItem(i)) > 0) {
+                kinds++;
+            }
+        }
+        int pick = random.nextInt(kinds);
+        for (int i = 0; ; i++) {
+            if (game.getItemCount(seat, GameAction.useItem(i)) > 0 && pick-- == 0) {
+                return GameAction.useItem(i);
+            }
+        }
+    }
+}
@@ -7,16 +7,11 @@ public class Beer extends Item {
      * @param caller the person who called it
      * @param otherPlayer the other player
      * @param shotgun current shotgun
-     * @return dummy number not necessary for this number
+     * @return 1 if the racked bullet was blank, 0 if it was loaded
      */
     @Override
     public int use(Player caller, Player otherPlayer, Shotgun shotgun) {
-        if (shotgun.shoot().isBlank()) {
-            System.out.println(caller.getName() + " racked a blank bullet!");
-        } else {
-            System.out.println(caller.getName() + " racked a loaded bullet!");
-        }
-        return 9;
+        return shotgun.shootBlank() ? 1 : 0;
     }
 
     /**
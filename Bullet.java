@@ -2,6 +2,17 @@
  * Bullet object within Shotgun. Important because needs to classify between loaded and blank bullets.
  */
 public class Bullet {
+
+    /**
+     * Shared blank bullet, Bullets cannot change so one is enough
+     */
+    public static final Bullet BLANK = new Bullet(true);
+
+    /**
+     * Shared loaded bullet
+     */
+    public static final Bullet LOADED = new Bullet(false);
+
     private final boolean isBlank;
 
     /**
@@ -12,6 +23,15 @@ public class Bullet {
         this.isBlank = isBlank;
     }
 
+    /**
+     * Returns the shared bullet of a kind, without creating one
+     * @param isBlank whether the bullet is a blank or loaded
+     * @return BLANK or LOADED
+     */
+    public static Bullet valueOf(boolean isBlank) {
+        return isBlank ? BLANK : LOADED;
+    }
+
     /**
      * Returns whether the bullet is blank.
      * @return isBlank
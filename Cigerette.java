@@ -22,7 +22,6 @@ public class Cigerette extends Item {
     @Override
     public int use(Player caller, Player otherPlayer, Shotgun shotgun) {
         caller.smoke();
-        System.out.println(caller.getName() + " has smoked a cigarette. They gain one hp.");
         return 9;
     }
 }
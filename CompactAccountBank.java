@@ -0,0 +1,360 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * AccountBank laid out as parallel primitive arrays instead of an array of Account objects.
+ *
+ * Each slot is a cached 32-bit username hash, wins, losses, a flag byte and the position of its username and
+ * password in one shared byte arena. A probe compares hashes in the int array and only looks at the arena when the
+ * hashes match, so lookups stay in a few cache lines and never follow a pointer per step. An account costs about
+ * 25 bytes of arrays plus its key bytes, against an Account object and two Strings in AccountBank.
+ *
+ * Accounts are only turned into Account objects when asked for, so getAccount() returns a copy.
+ * Use recordResult() to change wins and losses.
+ */
+public class CompactAccountBank {
+
+    /**
+     * The initial capacity of the table when created with the default constructor.
+     */
+    public static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The max load factor of the table, counting DEL markers.
+     */
+    public static final double MAX_LOAD_FACTOR = 0.67;
+
+    /**
+     * The max share of the arena taken by key bytes of removed or replaced accounts before it is compacted.
+     */
+    public static final double MAX_DEAD_ARENA = 0.5;
+
+    // Slot flags
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte REMOVED = 2;
+
+    private int[] hashes;
+    private int[] wins;
+    private int[] losses;
+    private byte[] flags;
+    // Where the username of each slot starts in the arena, the password follows it
+    private int[] keyOffsets;
+    // Username length in the high 16 bits, password length in the low 16 bits
+    private int[] keyLengths;
+    private byte[] arena;
+    private int arenaSize;
+    // Arena bytes no slot points at any more
+    private int deadBytes;
+    private int size;
+    private int used;
+
+    /**
+     * Constructs a new CompactAccountBank
+     */
+    public CompactAccountBank() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs a new CompactAccountBank sized for expectedSize accounts
+     * @param expectedSize number of accounts expected in the bank
+     */
+    public CompactAccountBank(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (expectedSize >= capacity * MAX_LOAD_FACTOR) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+        arena = new byte[Math.max(64, expectedSize * 16)];
+    }
+
+    /**
+     * Adds the given account, replacing the account with the same username if there is one.
+     * @param account the account to add
+     * @return null if the username was not in the bank, the old username otherwise
+     * @throws java.lang.IllegalArgumentException if account, its username or its password is null
+     */
+    public String put(Account account) {
+        if (account == null || account.getUsername() == null || account.getPassword() == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        if (used + 1 > flags.length * MAX_LOAD_FACTOR) {
+            // Grow if mostly live accounts, otherwise rebuilding at the same size drops the DEL markers
+            rebuild(size + 1 > flags.length / 2 ? flags.length * 2 : flags.length);
+        }
+
+        byte[] username = account.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] password = account.getPassword().getBytes(StandardCharsets.UTF_8);
+        int hash = account.getUsername().hashCode();
+        int index = find(hash, username);
+        String out = null;
+        if (index >= 0) {
+            out = account.getUsername();
+            // Keep the key bytes if the password did not change
+            if (!matches(index, password, keyLengths[index] >>> 16, keyLengths[index] & 0xFFFF)) {
+                deadBytes += keyLength(index);
+                writeKey(index, username, password);
+            }
+        } else {
+            int mask = flags.length - 1;
+            index = Hashing.mix(hash) & mask;
+            while (flags[index] == USED) {
+                index = (index + 1) & mask;
+            }
+            if (flags[index] == EMPTY) {
+                used++;
+            }
+            flags[index] = USED;
+            hashes[index] = hash;
+            writeKey(index, username, password);
+            size++;
+        }
+        wins[index] = account.getWins();
+        losses[index] = account.getLosses();
+        compactIfWasteful();
+        return out;
+    }
+
+    /**
+     * Removes the account with the same username
+     * @param account account to be removed
+     * @return username of the removed account
+     * @throws java.lang.IllegalArgumentException if account is null
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public String remove(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        int index = indexOf(account.getUsername());
+        flags[index] = REMOVED;
+        size--;
+        deadBytes += keyLength(index);
+        compactIfWasteful();
+        return account.getUsername();
+    }
+
+    /**
+     * Checks whether there is account in the bank that has the same username and password as the parameters.
+     * The password is compared byte by byte in the arena, no Account is created.
+     * @param username username provided by user
+     * @param password password provided by user
+     * @return true if valid account credentials. false if invalid account credentials
+     * @throws java.util.NoSuchElementException if the username is not in the bank
+     */
+    public boolean checkValue(String username, String password) {
+        int index = indexOf(username);
+        byte[] bytes = password.getBytes(StandardCharsets.UTF_8);
+        return matches(index, bytes, keyLengths[index] >>> 16, keyLengths[index] & 0xFFFF);
+    }
+
+    /**
+     * Returns a copy of the account with the same username
+     * @param account account knowing username
+     * @return account given username, password, wins, and losses
+     * @throws java.lang.IllegalArgumentException if account is null
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public Account getAccount(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        return materialize(indexOf(account.getUsername()));
+    }
+
+    /**
+     * Adds a finished game to an account
+     * @param username username of the account
+     * @param won true if the game was won, false if it was lost
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public void recordResult(String username, boolean won) {
+        int index = indexOf(username);
+        if (won) {
+            wins[index]++;
+        } else {
+            losses[index]++;
+        }
+    }
+
+    /**
+     * Returns copies of every account in the bank
+     * @return array of the accounts
+     */
+    public Account[] getTable() {
+        Account[] out = new Account[size];
+        int count = 0;
+        for (int i = 0; i < flags.length; i++) {
+            if (flags[i] == USED) {
+                out[count++] = materialize(i);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the size of the bank.
+     * @return the size of the bank
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the slot of a username
+     * @param username username to look for
+     * @return index of the slot
+     * @throws java.util.NoSuchElementException if the username is not in the bank
+     */
+    private int indexOf(String username) {
+        int index = find(username.hashCode(), username.getBytes(StandardCharsets.UTF_8));
+        if (index < 0) {
+            throw new NoSuchElementException("Key is not in map");
+        }
+        return index;
+    }
+
+    /**
+     * Probes for a username, comparing cached hashes first and key bytes only when the hashes match
+     * @param hash String.hashCode() of the username
+     * @param username UTF-8 bytes of the username
+     * @return index of the slot, or -1 if the username is not in the bank
+     */
+    private int find(int hash, byte[] username) {
+        int mask = flags.length - 1;
+        int index = Hashing.mix(hash) & mask;
+        while (flags[index] != EMPTY) {
+            if (hashes[index] == hash && flags[index] == USED
+                    && matches(index, username, 0, keyLengths[index] >>> 16)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Compares bytes with part of a slot's key in the arena
+     * @param index slot
+     * @param bytes bytes to compare
+     * @param from where the compared part starts, relative to the start of the key
+     * @param length length of the compared part
+     * @return true if the bytes are equal
+     */
+    private boolean matches(int index, byte[] bytes, int from, int length) {
+        if (bytes.length != length) {
+            return false;
+        }
+        int start = keyOffsets[index] + from;
+        return Arrays.equals(arena, start, start + length, bytes, 0, length);
+    }
+
+    /**
+     * Copies a slot's username and password to the end of the arena, growing it if needed, and points the slot at
+     * the copy. Any bytes the slot pointed at before are left in place, the caller counts them as dead.
+     * @param index slot
+     * @param username UTF-8 bytes of the username
+     * @param password UTF-8 bytes of the password
+     */
+    private void writeKey(int index, byte[] username, byte[] password) {
+        if (username.length > 0xFFFF || password.length > 0xFFFF) {
+            throw new IllegalArgumentException("Username or password is too long");
+        }
+        int length = username.length + password.length;
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        System.arraycopy(username, 0, arena, arenaSize, username.length);
+        System.arraycopy(password, 0, arena, arenaSize + username.length, password.length);
+        keyOffsets[index] = arenaSize;
+        keyLengths[index] = username.length << 16 | password.length;
+        arenaSize += length;
+    }
+
+    /**
+     * Returns the arena bytes of a slot's key
+     * @param index slot
+     * @return length of the username plus the password
+     */
+    private int keyLength(int index) {
+        return (keyLengths[index] >>> 16) + (keyLengths[index] & 0xFFFF);
+    }
+
+    /**
+     * Rebuilds the table at its current capacity once dead key bytes pass MAX_DEAD_ARENA of the arena, so repeated
+     * password changes and removals cannot grow the arena without bound
+     */
+    private void compactIfWasteful() {
+        if (deadBytes > arenaSize * MAX_DEAD_ARENA) {
+            rebuild(flags.length);
+        }
+    }
+
+    /**
+     * Creates an Account from a slot
+     * @param index slot
+     * @return account stored in the slot
+     */
+    private Account materialize(int index) {
+        int usernameLength = keyLengths[index] >>> 16;
+        int passwordLength = keyLengths[index] & 0xFFFF;
+        int start = keyOffsets[index];
+        return new Account(new String(arena, start, usernameLength, StandardCharsets.UTF_8),
+                new String(arena, start + usernameLength, passwordLength, StandardCharsets.UTF_8),
+                wins[index], losses[index]);
+    }
+
+    /**
+     * Rehashes every live slot into new arrays and a new arena, dropping DEL markers and the key bytes of
+     * removed or replaced accounts.
+     * @param capacity new capacity, a power of two
+     */
+    private void rebuild(int capacity) {
+        int[] oldHashes = hashes;
+        int[] oldWins = wins;
+        int[] oldLosses = losses;
+        byte[] oldFlags = flags;
+        int[] oldOffsets = keyOffsets;
+        int[] oldLengths = keyLengths;
+        byte[] oldArena = arena;
+        allocate(capacity);
+        arena = new byte[Math.max(64, arenaSize)];
+        arenaSize = 0;
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldFlags.length; i++) {
+            if (oldFlags[i] == USED) {
+                int index = Hashing.mix(oldHashes[i]) & mask;
+                while (flags[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                int length = (oldLengths[i] >>> 16) + (oldLengths[i] & 0xFFFF);
+                System.arraycopy(oldArena, oldOffsets[i], arena, arenaSize, length);
+                flags[index] = USED;
+                hashes[index] = oldHashes[i];
+                wins[index] = oldWins[i];
+                losses[index] = oldLosses[i];
+                keyOffsets[index] = arenaSize;
+                keyLengths[index] = oldLengths[i];
+                arenaSize += length;
+            }
+        }
+        used = size;
+        deadBytes = 0;
+    }
+
+    /**
+     * Allocates empty slot arrays
+     * @param capacity number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        wins = new int[capacity];
+        losses = new int[capacity];
+        flags = new byte[capacity];
+        keyOffsets = new int[capacity];
+        keyLengths = new int[capacity];
+    }
+}
@@ -0,0 +1,320 @@
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread safe version of AccountBank for hosting several sessions in one process.
+ *
+ * Accounts are spread over segments, each a small Linear Probing HashMap with its own lock. Reads never lock:
+ * they probe the segment's current table, whose slots are published with volatile writes. Writes lock only the
+ * segment of their username, and a resize rebuilds only that segment's table and publishes it in one step,
+ * so other segments keep taking writes and nobody's reads wait while it happens.
+ *
+ * An account in a table is never changed. A write stores a new Account in the slot, so a reader sees either the
+ * old account or the new one, never wins, losses and win rate out of step.
+ */
+public class ConcurrentAccountBank {
+
+    /**
+     * Default number of segments. More segments let more writers run at the same time.
+     */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    /**
+     * The initial capacity of each segment.
+     */
+    public static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The max load factor of each segment, counting DEL markers.
+     */
+    public static final double MAX_LOAD_FACTOR = 0.67;
+
+    // DEL marker. Removed slots point at it instead of at a mutated account so readers never see half a removal
+    private static final Account REMOVED = new Account("", "");
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /**
+     * Constructs a new bank with DEFAULT_SEGMENTS segments
+     */
+    public ConcurrentAccountBank() {
+        this(DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Constructs a new bank
+     * @param concurrency expected number of concurrent writers, rounded up to a power of two segments
+     */
+    public ConcurrentAccountBank(int concurrency) {
+        int count = 1;
+        int bits = 0;
+        while (count < concurrency) {
+            count *= 2;
+            bits++;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment();
+        }
+        segmentShift = 32 - bits;
+    }
+
+    /**
+     * Adds the given account, replacing the account with the same username if there is one.
+     * The bank stores its own copy of the account.
+     * @param account the account to add
+     * @return null if the username was not in the bank, the old username otherwise
+     * @throws java.lang.IllegalArgumentException if account, its username or its password is null
+     */
+    public String put(Account account) {
+        if (account == null || account.getUsername() == null || account.getPassword() == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        int hash = Hashing.mix(account.getUsername().hashCode());
+        return segmentFor(hash).put(hash, new Account(account.getUsername(), account.getPassword(),
+                account.getWins(), account.getLosses()));
+    }
+
+    /**
+     * Removes the account with the same username
+     * @param account account to be removed
+     * @return username of the removed account
+     * @throws java.lang.IllegalArgumentException if account is null
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public String remove(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        int hash = Hashing.mix(account.getUsername().hashCode());
+        return segmentFor(hash).remove(hash, account.getUsername());
+    }
+
+    /**
+     * Checks whether there is account in the bank that has the same username and password as the parameters.
+     * Does not lock.
+     * @param username username provided by user
+     * @param password password provided by user
+     * @return true if valid account credentials. false if invalid account credentials
+     * @throws java.util.NoSuchElementException if the username is not in the bank
+     */
+    public boolean checkValue(String username, String password) {
+        return getAccount(new Account(username, password)).getPassword().equals(password);
+    }
+
+    /**
+     * Returns the account with the same username. Does not lock.
+     * The account is shared with other threads and must not be changed, use recordResult() to add a game to it.
+     * @param account account knowing username
+     * @return account given username, password, wins, and losses
+     * @throws java.lang.IllegalArgumentException if account is null
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public Account getAccount(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int hash = Hashing.mix(account.getUsername().hashCode());
+        Account found = segmentFor(hash).get(hash, account.getUsername());
+        if (found == null) {
+            throw new NoSuchElementException("Key is not in map");
+        }
+        return found;
+    }
+
+    /**
+     * Adds a finished game to an account while holding its segment's lock. The updated account replaces the old
+     * one in a single volatile write.
+     * @param username username of the account
+     * @param won true if the game was won, false if it was lost
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public void recordResult(String username, boolean won) {
+        int hash = Hashing.mix(username.hashCode());
+        segmentFor(hash).recordResult(hash, username, won);
+    }
+
+    /**
+     * Returns the number of accounts in the bank. Not exact while other threads are writing.
+     * @return the size of the bank
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * Returns every account in the bank, for example to build a Leaderboard.
+     * Each segment is read as of some moment while the method runs.
+     * @return array of the accounts
+     */
+    public Account[] getTable() {
+        ArrayList<Account> out = new ArrayList<>();
+        for (Segment segment : segments) {
+            AtomicReferenceArray<Account> table = segment.table;
+            for (int i = 0; i < table.length(); i++) {
+                Account account = table.get(i);
+                if (account != null && account != REMOVED) {
+                    out.add(account);
+                }
+            }
+        }
+        return out.toArray(new Account[0]);
+    }
+
+    /**
+     * Picks the segment of a hash from its high bits, the low bits index into the segment
+     * @param hash mixed hash of the username
+     * @return segment holding the username
+     */
+    private Segment segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    /**
+     * One lock stripe of the bank. Writers synchronize on the segment, readers only read the volatile table.
+     */
+    private static class Segment {
+        private volatile AtomicReferenceArray<Account> table;
+        private volatile int size;
+        // Live accounts plus DEL markers, decides when to resize
+        private int used;
+
+        /**
+         * Creates an empty segment
+         */
+        Segment() {
+            table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        }
+
+        /**
+         * Lock free lookup
+         * @param hash mixed hash of the username
+         * @param key username
+         * @return the account, or null if it is not in the segment
+         */
+        Account get(int hash, String key) {
+            AtomicReferenceArray<Account> tab = table;
+            int mask = tab.length() - 1;
+            int index = hash & mask;
+            for (int probed = 0; probed < tab.length(); probed++) {
+                Account account = tab.get(index);
+                if (account == null) {
+                    return null;
+                }
+                if (account != REMOVED && account.getUsername().equals(key)) {
+                    return account;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Adds or replaces an account
+         * @param hash mixed hash of the username
+         * @param account copy of the account to store
+         * @return null if the username was not in the segment, the old username otherwise
+         */
+        synchronized String put(int hash, Account account) {
+            if (used + 1 > table.length() * MAX_LOAD_FACTOR) {
+                // Grow if mostly live accounts, otherwise rebuilding at the same size drops the DEL markers
+                resize(size + 1 > table.length() / 2 ? table.length() * 2 : table.length());
+            }
+            AtomicReferenceArray<Account> tab = table;
+            int mask = tab.length() - 1;
+            int index = hash & mask;
+            int delIndex = -1;
+            for (int probed = 0; probed < tab.length(); probed++) {
+                Account current = tab.get(index);
+                if (current == null) {
+                    break;
+                }
+                if (current == REMOVED) {
+                    delIndex = delIndex < 0 ? index : delIndex;
+                } else if (current.getUsername().equals(account.getUsername())) {
+                    // Same username, replace it in one volatile write
+                    tab.set(index, account);
+                    return current.getUsername();
+                }
+                index = (index + 1) & mask;
+            }
+            if (delIndex >= 0) {
+                tab.set(delIndex, account);
+            } else {
+                tab.set(index, account);
+                used++;
+            }
+            size++;
+            return null;
+        }
+
+        /**
+         * Replaces an account with a copy that has one more win or loss
+         * @param hash mixed hash of the username
+         * @param key username
+         * @param won true if the game was won, false if it was lost
+         */
+        synchronized void recordResult(int hash, String key, boolean won) {
+            Account account = get(hash, key);
+            if (account == null) {
+                throw new NoSuchElementException("Key is not in map");
+            }
+            put(hash, new Account(account.getUsername(), account.getPassword(),
+                    account.getWins() + (won ? 1 : 0), account.getLosses() + (won ? 0 : 1)));
+        }
+
+        /**
+         * Removes an account by replacing it with the DEL marker
+         * @param hash mixed hash of the username
+         * @param key username
+         * @return username of the removed account
+         */
+        synchronized String remove(int hash, String key) {
+            AtomicReferenceArray<Account> tab = table;
+            int mask = tab.length() - 1;
+            int index = hash & mask;
+            for (int probed = 0; probed < tab.length(); probed++) {
+                Account current = tab.get(index);
+                if (current == null) {
+                    break;
+                }
+                if (current != REMOVED && current.getUsername().equals(key)) {
+                    tab.set(index, REMOVED);
+                    size--;
+                    return current.getUsername();
+                }
+                index = (index + 1) & mask;
+            }
+            throw new NoSuchElementException("Account is not in map");
+        }
+
+        /**
+         * Rebuilds this segment into a new table and publishes it. Readers keep using the old table until they
+         * see the new one, and both hold the same accounts.
+         * @param length new length, a power of two
+         */
+        private void resize(int length) {
+            AtomicReferenceArray<Account> old = table;
+            AtomicReferenceArray<Account> tab = new AtomicReferenceArray<>(length);
+            int mask = length - 1;
+            for (int i = 0; i < old.length(); i++) {
+                Account account = old.get(i);
+                if (account != null && account != REMOVED) {
+                    int index = Hashing.mix(account.getUsername().hashCode()) & mask;
+                    while (tab.get(index) != null) {
+                        index = (index + 1) & mask;
+                    }
+                    tab.set(index, account);
+                }
+            }
+            used = size;
+            table = tab;
+        }
+    }
+}
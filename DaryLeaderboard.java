@@ -0,0 +1,353 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Leaderboard implemented as an iterative d-ary MaxHeap, 4-ary by default.
+ *
+ * The heap stores the win rate of every account as a primitive double beside an int handle, in two arrays in heap
+ * order, and the accounts themselves in a third array indexed by handle. Sifting compares doubles in place, so it
+ * never boxes or follows a reference, and the d children of a node sit next to each other in the key array, so
+ * picking the best child reads one or two cache lines. A wider heap is also shallower, log_d(n) levels instead of
+ * log_2(n), which is where removeMax spends its time.
+ *
+ * Keys are the win rates the accounts had when they were added, like the copies Leaderboard keeps. Accounts that
+ * have not played (NaN win rate) rank highest, the same as Account.compareTo().
+ */
+public class DaryLeaderboard {
+
+    /**
+     * Number of children per node when none is given
+     */
+    public static final int DEFAULT_ARITY = 4;
+
+    // The initial capacity of the heap when created with no data
+    public static final int INITIAL_CAPACITY = 13;
+
+    private final int arity;
+    // Win rate and handle of the account at every heap position, root at index 0
+    private double[] keys;
+    private int[] handles;
+    // Account of every handle, and handles freed by remove()
+    private Account[] accounts;
+    private int[] freeHandles;
+    private int freeCount;
+    private int handleCount;
+    private int size;
+
+    /**
+     * Constructs an empty 4-ary leaderboard
+     */
+    public DaryLeaderboard() {
+        this(DEFAULT_ARITY);
+    }
+
+    /**
+     * Constructs an empty leaderboard
+     * @param arity - number of children per node
+     * @throws java.lang.IllegalArgumentException if arity is less than 2
+     */
+    public DaryLeaderboard(int arity) {
+        this(new Account[0], arity);
+    }
+
+    /**
+     * Creates a 4-ary heap from a set of initial values
+     * @param data - accounts to rank, null entries and DEL markers are skipped
+     * @throws java.lang.IllegalArgumentException if data is null
+     */
+    public DaryLeaderboard(Account[] data) {
+        this(data, DEFAULT_ARITY);
+    }
+
+    /**
+     * Creates a properly ordered heap from a set of initial values.
+     *
+     * Uses the BuildHeap algorithm: the accounts are copied in as they come and every internal node is sifted
+     * down, from the last one up to the root, in O(n).
+     *
+     * @param data - accounts to rank, null entries and DEL markers are skipped
+     * @param arity - number of children per node
+     * @throws java.lang.IllegalArgumentException if data is null or arity is less than 2
+     */
+    public DaryLeaderboard(Account[] data, int arity) {
+        if (data == null) {
+            throw new IllegalArgumentException("Build Heap cannot be done on null data structure");
+        }
+        if (arity < 2) {
+            throw new IllegalArgumentException("A heap needs at least 2 children per node");
+        }
+        this.arity = arity;
+        allocate(Math.max(INITIAL_CAPACITY, data.length));
+        for (Account account : data) {
+            // Skip empty slots and DEL markers of removed accounts
+            if (account == null || account.isRemoved()) {
+                continue;
+            }
+            accounts[size] = account;
+            handles[size] = size;
+            keys[size] = key(account);
+            size++;
+        }
+        handleCount = size;
+        for (int i = (size - 2) / arity; i >= 0 && size > 1; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Adds an account to the heap, doubling the arrays if they are full
+     * @param data - the account to add
+     * @throws java.lang.IllegalArgumentException if account is null
+     */
+    public void add(Account data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data added cannot be null");
+        }
+        if (size == keys.length) {
+            grow();
+        }
+        int handle = freeCount > 0 ? freeHandles[--freeCount] : handleCount++;
+        accounts[handle] = data;
+        keys[size] = key(data);
+        handles[size] = handle;
+        siftUp(size++);
+    }
+
+    /**
+     * Removes and returns the best account
+     * @return the account that was removed
+     * @throws java.util.NoSuchElementException if the heap is empty
+     */
+    public Account remove() {
+        if (size == 0) {
+            throw new NoSuchElementException("Cannot remove from empty heap");
+        }
+        int handle = handles[0];
+        Account out = accounts[handle];
+        accounts[handle] = null;
+        freeHandles[freeCount++] = handle;
+        size--;
+        if (size > 0) {
+            keys[0] = keys[size];
+            handles[0] = handles[size];
+            siftDown(0);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the best account
+     * @return the maximum element
+     * @throws java.util.NoSuchElementException if the heap is empty
+     */
+    public Account getMax() {
+        if (size == 0) {
+            throw new NoSuchElementException("Cannot get max from empty heap");
+        }
+        return accounts[handles[0]];
+    }
+
+    /**
+     * Returns the k best accounts, best first, without changing the heap.
+     * Works like Leaderboard.topK(), every taken node offers its d children as candidates, so it is O(k d log k).
+     * @param k - number of accounts to return
+     * @return up to k accounts, best first
+     * @throws java.lang.IllegalArgumentException if k is negative
+     */
+    public List<Account> topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative");
+        }
+        List<Account> out = new ArrayList<>(Math.min(k, size));
+        if (k == 0 || size == 0) {
+            return out;
+        }
+        // Binary MaxHeap of heap positions, at most (d - 1) are added per account taken
+        int[] candidates = new int[(int) Math.min((long) k * arity + 1, size)];
+        int count = 0;
+        candidates[count++] = 0;
+        while (out.size() < k && count > 0) {
+            int best = candidates[0];
+            out.add(accounts[handles[best]]);
+            candidates[0] = candidates[--count];
+            siftDownCandidate(candidates, count, 0);
+            long first = (long) best * arity + 1;
+            for (long child = first; child < first + arity && child < size; child++) {
+                candidates[count] = (int) child;
+                siftUpCandidate(candidates, count++);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns whether the heap is empty
+     * @return true if empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Clears the heap, resetting the arrays to the initial capacity
+     */
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+        size = 0;
+        handleCount = 0;
+    }
+
+    /**
+     * Returns the number of accounts in the heap
+     * @return the size of the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of children per node
+     * @return arity of the heap
+     */
+    public int arity() {
+        return arity;
+    }
+
+    /**
+     * Overrides Object's toString Method
+     * @return String representation of the top 10 accounts, in the same format as Leaderboard
+     */
+    @Override
+    public String toString() {
+        String out = "----------------------------------\nLeaderboard:\n";
+        List<Account> top = topK(10);
+        for (int i = 0; i < top.size(); i++) {
+            out += (i + 1) + ". " + top.get(i);
+        }
+        out += "----------------------------------\n";
+        return out;
+    }
+
+    /**
+     * Moves the entry at a position towards the root while it beats its parent.
+     * The entry is held aside and parents are moved down into the hole, so each level costs one write.
+     * @param index - heap position
+     */
+    private void siftUp(int index) {
+        double key = keys[index];
+        int handle = handles[index];
+        while (index > 0) {
+            int parent = (index - 1) / arity;
+            if (keys[parent] >= key) {
+                break;
+            }
+            keys[index] = keys[parent];
+            handles[index] = handles[parent];
+            index = parent;
+        }
+        keys[index] = key;
+        handles[index] = handle;
+    }
+
+    /**
+     * Moves the entry at a position towards the leaves while its best child beats it
+     * @param index - heap position
+     */
+    private void siftDown(int index) {
+        double key = keys[index];
+        int handle = handles[index];
+        while (true) {
+            long first = (long) index * arity + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = (int) Math.min(first + arity, size);
+            int best = (int) first;
+            for (int child = best + 1; child < last; child++) {
+                if (keys[child] > keys[best]) {
+                    best = child;
+                }
+            }
+            if (keys[best] <= key) {
+                break;
+            }
+            keys[index] = keys[best];
+            handles[index] = handles[best];
+            index = best;
+        }
+        keys[index] = key;
+        handles[index] = handle;
+    }
+
+    /**
+     * Moves a candidate position towards the root of the candidate heap while it beats its parent
+     * @param candidates - candidate heap
+     * @param index - position of the candidate
+     */
+    private void siftUpCandidate(int[] candidates, int index) {
+        while (index > 0 && keys[candidates[index]] > keys[candidates[(index - 1) / 2]]) {
+            int temp = candidates[index];
+            candidates[index] = candidates[(index - 1) / 2];
+            candidates[(index - 1) / 2] = temp;
+            index = (index - 1) / 2;
+        }
+    }
+
+    /**
+     * Moves a candidate position towards the leaves of the candidate heap while a child beats it
+     * @param candidates - candidate heap
+     * @param count - number of candidates
+     * @param index - position of the candidate
+     */
+    private void siftDownCandidate(int[] candidates, int count, int index) {
+        while (index * 2 + 1 < count) {
+            int child = index * 2 + 1;
+            if (child + 1 < count && keys[candidates[child + 1]] > keys[candidates[child]]) {
+                child++;
+            }
+            if (keys[candidates[child]] <= keys[candidates[index]]) {
+                break;
+            }
+            int temp = candidates[index];
+            candidates[index] = candidates[child];
+            candidates[child] = temp;
+            index = child;
+        }
+    }
+
+    /**
+     * Returns the key of an account. NaN (no games played) becomes positive infinity so that plain comparisons
+     * rank it highest, like Double.compare() does.
+     * @param account - account to rank
+     * @return heap key
+     */
+    private static double key(Account account) {
+        double winRate = account.getWinRate();
+        return winRate != winRate ? Double.POSITIVE_INFINITY : winRate;
+    }
+
+    /**
+     * Allocates empty arrays
+     * @param capacity - number of accounts they hold
+     */
+    private void allocate(int capacity) {
+        keys = new double[capacity];
+        handles = new int[capacity];
+        accounts = new Account[capacity];
+        freeHandles = new int[capacity];
+        freeCount = 0;
+    }
+
+    /**
+     * Doubles the arrays. The heap is full, so no handle is free.
+     */
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        handles = Arrays.copyOf(handles, capacity);
+        accounts = Arrays.copyOf(accounts, capacity);
+        freeHandles = new int[capacity];
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Makes the decisions of one seat of a GameEngine, whether a person at a console, an AI policy or a remote client.
+ */
+public interface DecisionProvider {
+    /**
+     * Picks the next action of a seat. Called every time the seat has to act, so a turn that uses several items
+     * asks several times. The seat may read any state of the game, but must not apply actions itself.
+     * @param game - game being played
+     * @param seat - seat that has to act, GameEngine.FIRST or GameEngine.SECOND
+     * @return one of game.legalActions()
+     */
+    GameAction decide(GameEngine game, int seat);
+}
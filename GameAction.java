@@ -0,0 +1,69 @@
+/**
+ * Everything a player can do on their turn: shoot, or use one of the five items.
+ * Item actions carry the ItemRack index of their item.
+ */
+public enum GameAction {
+    SHOOT_OPPONENT(-1, "Shoot Opponent"),
+    SHOOT_SELF(-1, "Shoot Self"),
+    USE_SAW_BLADE(0, "Saw Blade"),
+    USE_MAGNIFYING_GLASS(1, "Magnifying Glass"),
+    USE_BEER(2, "Beer"),
+    USE_CIGARETTE(3, "Cigarette"),
+    USE_HANDCUFFS(4, "Handcuff");
+
+    // Item actions in ItemRack index order
+    private static final GameAction[] ITEMS = {
+        USE_SAW_BLADE, USE_MAGNIFYING_GLASS, USE_BEER, USE_CIGARETTE, USE_HANDCUFFS
+    };
+
+    private final int item;
+    private final String name;
+
+    /**
+     * Creates an action
+     * @param item - ItemRack index of the item used, -1 for shots
+     * @param name - name shown to players
+     */
+    GameAction(int item, String name) {
+        this.item = item;
+        this.name = name;
+    }
+
+    /**
+     * Returns the action that uses an item
+     * @param item - ItemRack index of the item
+     * @return the item's action
+     * @throws java.lang.IllegalArgumentException if there is no item with that index
+     */
+    public static GameAction useItem(int item) {
+        if (item < 0 || item >= ITEMS.length) {
+            throw new IllegalArgumentException("There is no item " + item);
+        }
+        return ITEMS[item];
+    }
+
+    /**
+     * Returns whether the action uses an item
+     * @return true for item actions, false for shots
+     */
+    public boolean isItem() {
+        return item >= 0;
+    }
+
+    /**
+     * Returns the ItemRack index of the item used
+     * @return index of the item, -1 for shots
+     */
+    public int getItem() {
+        return item;
+    }
+
+    /**
+     * Returns the name shown to players, the same as the item's toString()
+     * @return name of the action
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,398 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Headless Shotgun Roulette. Holds the whole state of one game and applies the rules, without reading input or
+ * printing anything, so games can run at CPU speed or inside a service.
+ *
+ * Each round deals a new shotgun with roundNumber * 2 + 1 bullets (at most Shotgun.MAX_SHELLS), each a blank half
+ * of the time, and gives each seat bullets / 4 random items. FIRST starts every round. On its turn a seat uses any
+ * number of items, then shoots either seat. Shooting yourself with a blank gives you another turn, anything else
+ * passes the turn. A handcuffed seat loses its next turn. The round ends when the shotgun is empty, the game when
+ * a seat dies.
+ *
+ * Decisions come in through applyAction(), or through DecisionProviders with play(). Everything that happens goes
+ * out to GameListeners.
+ */
+public class GameEngine {
+
+    /**
+     * Seat that starts every round. The console game puts the human here.
+     */
+    public static final int FIRST = 0;
+
+    /**
+     * The other seat
+     */
+    public static final int SECOND = 1;
+
+    /**
+     * Health of each seat at the start of a game
+     */
+    public static final int STARTING_HP = 5;
+
+    private final Player[] players;
+    private final ItemRack[] racks;
+    private final Random random;
+    private final List<GameListener> listeners;
+    private Shotgun shotgun;
+    private int round;
+    private int seat;
+    // Counts turns, so providers can tell a new turn from another action in the same turn
+    private int turn;
+    private int winner;
+    // What a Magnifying Glass showed each seat about the next bullet: 1 blank, 0 loaded, -1 nothing
+    private final int[] revealed;
+
+    /**
+     * Creates a game with a random deal
+     * @param firstName - name of the FIRST seat
+     * @param secondName - name of the SECOND seat
+     */
+    public GameEngine(String firstName, String secondName) {
+        this(firstName, secondName, new Random());
+    }
+
+    /**
+     * Creates a game. The same random numbers deal the same bullets and items.
+     * @param firstName - name of the FIRST seat
+     * @param secondName - name of the SECOND seat
+     * @param random - random numbers for dealing
+     */
+    public GameEngine(String firstName, String secondName, Random random) {
+        players = new Player[] {new Player(STARTING_HP, firstName, false), new Player(STARTING_HP, secondName, true)};
+        racks = new ItemRack[2];
+        this.random = random;
+        listeners = new ArrayList<>();
+        revealed = new int[2];
+        winner = -1;
+    }
+
+    /**
+     * Subscribes a listener to every event of the game
+     * @param listener - listener to add
+     */
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Deals the first round. Called by play() and by the first applyAction() if it was not called before.
+     */
+    public void start() {
+        if (round == 0) {
+            startRound();
+        }
+    }
+
+    /**
+     * Plays the whole game, asking each seat's provider for its actions
+     * @param first - decides for FIRST
+     * @param second - decides for SECOND
+     * @return the winning seat
+     */
+    public int play(DecisionProvider first, DecisionProvider second) {
+        start();
+        while (!isOver()) {
+            applyAction((seat == FIRST ? first : second).decide(this, seat));
+        }
+        return winner;
+    }
+
+    /**
+     * Returns every action the seat to move may take
+     * @return legal actions, empty once the game is over
+     */
+    public List<GameAction> legalActions() {
+        start();
+        List<GameAction> out = new ArrayList<>();
+        if (isOver()) {
+            return out;
+        }
+        out.add(GameAction.SHOOT_OPPONENT);
+        out.add(GameAction.SHOOT_SELF);
+        for (int i = 0; i < ItemRack.ITEM_KINDS; i++) {
+            if (racks[seat].getCount(i) > 0) {
+                out.add(GameAction.useItem(i));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Checks whether the seat to move may take an action
+     * @param action - action to check
+     * @return true if applyAction() would accept it
+     */
+    public boolean isLegal(GameAction action) {
+        start();
+        if (isOver() || action == null) {
+            return false;
+        }
+        return !action.isItem() || racks[seat].getCount(action.getItem()) > 0;
+    }
+
+    /**
+     * Applies an action of the seat to move, then moves the game on to the next decision: skips the turns of
+     * handcuffed seats, ends the round when the shotgun is empty, deals the next one and ends the game when a seat
+     * dies.
+     * @param action - action of getCurrentSeat()
+     * @throws java.lang.IllegalStateException if the game is over
+     * @throws java.lang.IllegalArgumentException if the action is not legal
+     */
+    public void applyAction(GameAction action) {
+        start();
+        if (isOver()) {
+            throw new IllegalStateException("Game is over");
+        }
+        if (!isLegal(action)) {
+            throw new IllegalArgumentException(action + " is not a legal action");
+        }
+        int other = 1 - seat;
+        if (action.isItem()) {
+            int seen = racks[seat].use(action.getItem(), players[seat], players[other], shotgun);
+            for (GameListener listener : listeners) {
+                listener.itemUsed(this, seat, action);
+            }
+            if (action == GameAction.USE_MAGNIFYING_GLASS) {
+                revealed[seat] = seen;
+                for (GameListener listener : listeners) {
+                    listener.bulletRevealed(this, seat, seen == 1);
+                }
+            } else if (action == GameAction.USE_BEER) {
+                bulletGone();
+                for (GameListener listener : listeners) {
+                    listener.bulletRacked(this, seat, seen == 1);
+                }
+            }
+            // The seat keeps its turn unless the Beer emptied the shotgun
+            if (shotgun.getBulletCount() == 0) {
+                endRound();
+            }
+            return;
+        }
+
+        boolean atSelf = action == GameAction.SHOOT_SELF;
+        boolean blank = shotgun.shootBlank();
+        bulletGone();
+        if (!blank) {
+            players[atSelf ? seat : other].shot(shotgun.isSawedOff());
+        }
+        for (GameListener listener : listeners) {
+            listener.shotFired(this, seat, atSelf, blank);
+        }
+        if (!players[seat].isAlive() || !players[other].isAlive()) {
+            winner = players[seat].isAlive() ? seat : other;
+            for (GameListener listener : listeners) {
+                listener.gameOver(this, winner);
+            }
+        } else if (shotgun.getBulletCount() == 0) {
+            endRound();
+        } else if (!atSelf || !blank) {
+            passTurn();
+        } else {
+            // A blank at yourself earns another turn
+            turn++;
+        }
+    }
+
+    /**
+     * Gives the turn to the other seat, or straight back if the other seat is handcuffed
+     */
+    private void passTurn() {
+        int other = 1 - seat;
+        turn++;
+        if (players[other].isHandcuffed()) {
+            players[other].free();
+            for (GameListener listener : listeners) {
+                listener.turnSkipped(this, other);
+            }
+        } else {
+            seat = other;
+        }
+    }
+
+    /**
+     * Tells the listeners the round is over and deals the next one
+     */
+    private void endRound() {
+        for (GameListener listener : listeners) {
+            listener.roundEnded(this);
+        }
+        startRound();
+    }
+
+    /**
+     * Deals a new shotgun and new items, frees both seats and gives FIRST the turn
+     */
+    private void startRound() {
+        round++;
+        // A chamber holds at most Shotgun.MAX_SHELLS, reached only if 31 rounds pass without a death
+        int bullets = Math.min(round * 2 + 1, Shotgun.MAX_SHELLS);
+        shotgun = new Shotgun(bullets);
+        racks[FIRST] = new ItemRack();
+        racks[SECOND] = new ItemRack();
+        for (int i = 0; i < bullets / 4; i++) {
+            racks[FIRST].addItem(random.nextInt(ItemRack.ITEM_KINDS));
+            racks[SECOND].addItem(random.nextInt(ItemRack.ITEM_KINDS));
+        }
+        for (int i = 0; i < bullets; i++) {
+            shotgun.loadShell(random.nextDouble() > 0.5);
+        }
+        players[FIRST].free();
+        players[SECOND].free();
+        bulletGone();
+        seat = FIRST;
+        turn++;
+        for (GameListener listener : listeners) {
+            listener.roundStarted(this);
+        }
+    }
+
+    /**
+     * Forgets what the Magnifying Glass showed, the bullet it showed has left the shotgun
+     */
+    private void bulletGone() {
+        revealed[FIRST] = -1;
+        revealed[SECOND] = -1;
+    }
+
+    /**
+     * Returns whether a seat has died
+     * @return true if the game is over
+     */
+    public boolean isOver() {
+        return winner >= 0;
+    }
+
+    /**
+     * Returns the seat that won
+     * @return winning seat, or -1 while the game is running
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns the seat that has to act
+     * @return FIRST or SECOND
+     */
+    public int getCurrentSeat() {
+        return seat;
+    }
+
+    /**
+     * Returns the number of the current turn. It changes whenever a turn starts, including another turn earned by
+     * a blank, and stays the same while a seat uses items.
+     * @return turn number
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    /**
+     * Returns the number of the current round, 1 for the first
+     * @return round number
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * Returns the name of a seat
+     * @param seat - FIRST or SECOND
+     * @return name of the seat
+     */
+    public String getName(int seat) {
+        return players[seat].getName();
+    }
+
+    /**
+     * Returns the health of a seat
+     * @param seat - FIRST or SECOND
+     * @return health points
+     */
+    public int getHp(int seat) {
+        return players[seat].getHp();
+    }
+
+    /**
+     * Returns whether a seat will lose its next turn
+     * @param seat - FIRST or SECOND
+     * @return true if handcuffed
+     */
+    public boolean isHandcuffed(int seat) {
+        return players[seat].isHandcuffed();
+    }
+
+    /**
+     * Returns how many of an item a seat has
+     * @param seat - FIRST or SECOND
+     * @param item - item action
+     * @return number of those items, 0 for shots
+     */
+    public int getItemCount(int seat, GameAction item) {
+        return item.isItem() ? racks[seat].getCount(item.getItem()) : 0;
+    }
+
+    /**
+     * Returns how many items a seat has
+     * @param seat - FIRST or SECOND
+     * @return number of items
+     */
+    public int getItemCount(int seat) {
+        return racks[seat].getSize();
+    }
+
+    /**
+     * Returns the bullets left in the shotgun
+     * @return bullet count
+     */
+    public int getBulletCount() {
+        return shotgun.getBulletCount();
+    }
+
+    /**
+     * Returns whether the shotgun does double damage this round
+     * @return true if sawed off
+     */
+    public boolean isSawedOff() {
+        return shotgun.isSawedOff();
+    }
+
+    /**
+     * Returns whether a Magnifying Glass showed a seat the next bullet
+     * @param seat - FIRST or SECOND
+     * @return true if the seat knows the next bullet
+     */
+    public boolean knowsNextBullet(int seat) {
+        return revealed[seat] >= 0;
+    }
+
+    /**
+     * Returns what a Magnifying Glass showed a seat
+     * @param seat - FIRST or SECOND
+     * @return true if the next bullet is a blank, false if it is loaded or the seat does not know
+     */
+    public boolean isNextBulletBlank(int seat) {
+        return revealed[seat] == 1;
+    }
+
+    /**
+     * Describes the shotgun as dealt, for showing at the start of a round
+     * @return String representation of the shotgun
+     */
+    public String describeShotgun() {
+        return shotgun.toString();
+    }
+
+    /**
+     * Describes the items of a seat
+     * @param seat - FIRST or SECOND
+     * @return String representation of its ItemRack
+     */
+    public String describeItems(int seat) {
+        return racks[seat].toString();
+    }
+}
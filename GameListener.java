@@ -0,0 +1,72 @@
+/**
+ * Gets told about everything that happens in a GameEngine, for showing a game or collecting statistics about it.
+ * Every method does nothing by default so listeners only implement the events they need.
+ */
+public interface GameListener {
+    /**
+     * Called after a round was dealt, before its first action
+     * @param game - game being played
+     */
+    default void roundStarted(GameEngine game) {
+    }
+
+    /**
+     * Called after a seat used an item, before the events of its effect
+     * @param game - game being played
+     * @param seat - seat that used the item
+     * @param item - item action that was applied
+     */
+    default void itemUsed(GameEngine game, int seat, GameAction item) {
+    }
+
+    /**
+     * Called after a Beer racked the next bullet out of the shotgun
+     * @param game - game being played
+     * @param seat - seat that used the Beer
+     * @param blank - whether the racked bullet was a blank
+     */
+    default void bulletRacked(GameEngine game, int seat, boolean blank) {
+    }
+
+    /**
+     * Called after a Magnifying Glass showed a seat the next bullet. Only that seat is meant to know it.
+     * @param game - game being played
+     * @param seat - seat that used the Magnifying Glass
+     * @param blank - whether the next bullet is a blank
+     */
+    default void bulletRevealed(GameEngine game, int seat, boolean blank) {
+    }
+
+    /**
+     * Called after a seat shot
+     * @param game - game being played
+     * @param seat - seat that shot
+     * @param atSelf - true if the seat shot itself
+     * @param blank - whether the bullet was a blank
+     */
+    default void shotFired(GameEngine game, int seat, boolean atSelf, boolean blank) {
+    }
+
+    /**
+     * Called when a handcuffed seat loses its turn
+     * @param game - game being played
+     * @param seat - seat whose turn was skipped
+     */
+    default void turnSkipped(GameEngine game, int seat) {
+    }
+
+    /**
+     * Called when the shotgun is empty and both seats are still alive, before the next round is dealt
+     * @param game - game being played
+     */
+    default void roundEnded(GameEngine game) {
+    }
+
+    /**
+     * Called once when a seat dies
+     * @param game - game being played
+     * @param winner - seat that is still alive
+     */
+    default void gameOver(GameEngine game, int winner) {
+    }
+}
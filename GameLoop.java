@@ -1,10 +1,26 @@
-import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 /**
- * Game functions as a loop of similar code. Placed all of that code in this file to simplify Main.java's code
+ * Console adapter of the GameEngine. Reads the decisions of the human seat from a Scanner and prints everything
+ * that happens in the game. All the rules live in GameEngine, this class only talks to the person at the console.
  */
-public class GameLoop {
+public class GameLoop implements DecisionProvider, GameListener {
+    private final Scanner scan;
+    private final int seat;
+    // Turn the human last acted in, and whether they still want to use items in it
+    private int turn = -1;
+    private boolean wantsItems;
+
+    /**
+     * Creates the console adapter of one seat
+     * @param scan - Scanner object instance
+     * @param seat - seat of the human player, GameEngine.FIRST or GameEngine.SECOND
+     */
+    public GameLoop(Scanner scan, int seat) {
+        this.scan = scan;
+        this.seat = seat;
+    }
+
     /**
      * Static helper method that tells me whether a string can be turned into an int
      * @param str - string to be tested
@@ -20,115 +36,65 @@ public class GameLoop {
     }
 
     /**
-     * Checks whether game should continue.
-     * If character is dead it will end the game.
-     * If shotgun is empty it will end the round.
-     * @param player - Human player
-     * @param ai - AI opponent
-     * @param shotgun - Shotgun in play
-     * @param account - Account of Human Player
-     * @return true if the game shall continue and new round should start. false if game should end.
+     * Asks the human for their next action. They are asked about items until they say no or run out of them,
+     * then which way to shoot.
+     * @param game - game being played
+     * @param seat - seat of the human
+     * @return the chosen action
      */
-    public boolean continueGame(Player player, Player ai, Shotgun shotgun, Account account) {
-        if (!player.isAlive()) {
-            System.out.println(player.getName() + " died!");
-            account.lose();
-            return false;
-        } else if (!ai.isAlive()) {
-            System.out.println(player.getName() + " won!");
-            account.win();
-            return false;
-        } else if (shotgun.getBulletCount() == 0) {
-            System.out.println("Shotgun is empty");
+    @Override
+    public GameAction decide(GameEngine game, int seat) {
+        if (game.getTurn() != turn) {
+            turn = game.getTurn();
+            wantsItems = true;
+        }
+        // Keeps asking for items to use until player no longer wants items or no more items left
+        if (wantsItems && game.getItemCount(seat) > 0) {
+            System.out.println("Would you like to use an item? Yes (1)? Or No (0)?");
+            if (readChoice("Please enter one of the numbers (0) or (1).") == 1) {
+                // Keeps trying until the player picks an item they have
+                while (true) {
+                    GameAction item = GameAction.useItem(useItem());
+                    if (game.isLegal(item)) {
+                        return item;
+                    }
+                    System.out.println("Cannot use item that you do not have.");
+                }
+            }
+            wantsItems = false;
         }
-        return true;
+        // Now that user has used all items or does not want to use them they can finally play their turn
+        System.out.println("\n");
+        System.out.println("Would you like to shoot enemy (0) or shoot yourself (1)?");
+        return readChoice("Please enter the value (0) or (1).") == 0 ? GameAction.SHOOT_OPPONENT
+                : GameAction.SHOOT_SELF;
     }
 
     /**
-     * The main crux of the game aspect of this game.
-     * Loops each turn for the player and the AI until the gun is out of bullets or a character has died
-     * @param shotgun - Current shotgun in play
-     * @param player - Human player
-     * @param ai - AI player
-     * @param scan - Scanner object instance
-     * @param playerItemRack - Human player items
-     * @param aiItemRack - AI player items
-     * @return shotgun at the end of the round so that if round is over we can check to see why it is over
+     * Reads a 0 or a 1
+     * @param retry - message shown after an invalid answer
+     * @return 0 or 1
      */
-    public Shotgun gameLoop(Shotgun shotgun, Player player, Player ai, Scanner scan,
-                            ItemRack playerItemRack, ItemRack aiItemRack) {
-        // This boolean means that it is the human player's turn if true
-        // First turn of every round goes to Human Player
-        boolean playerTurn = true;
-
-        // While gun is not empty and both characters are alive
-        while (shotgun.getBulletCount() > 0 && player.isAlive() && ai.isAlive()) {
-            // Checks whether gun is not empty and it is the human player's turn
-            if (shotgun.getBulletCount() > 0 && playerTurn) {
-                // Checks if the turn should be skipped cause the player is handcuffed
-                if (player.isHandcuffed()) {
-                    // Turn is skipped but player is free afterwards
-                    player.free();
-                    playerTurn = aiTurn(player, ai, aiItemRack, shotgun, playerTurn);
-                // It is the player's turn to play and they are not handcuffed
-                } else {
-                    // Dummy Value
-                    int reply = 3;
-                    // Keeps asking for items to use until player no longer wants items or no more items left
-                    while (reply != 0 && playerItemRack.getSize() > 0) {
-                        System.out.println("Would you like to use an item? Yes (1)? Or No (0)?");
-                        // Tries to get valid input
-                        while (true) {
-                            if (scan.hasNextInt()) {
-                                reply = scan.nextInt();
-                                if (reply == 0 || reply == 1) {
-                                    break;
-                                } else {
-                                    System.out.println("Please enter one of the numbers (0) or (1).");
-                                }
-                            } else {
-                                System.out.println("Please enter one of the numbers (0) or (1).");
-                                scan.next();
-                            }
-                        }
-                        // If user wants to use item
-                        if (reply == 1) {
-                            // Keeps trying for valid input
-                            while (true) {
-                                try {
-                                    playerItemRack.use(this.useItem(scan), player, ai, shotgun);
-                                    break;
-                                } catch (NoSuchElementException e) {
-                                    System.out.println("Cannot use item that you do not have.");
-                                    System.out.println("Please enter one of the numbers (0), (1), (2), "
-                                            + "(3), (4), or (5).");
-                                    scan.next();
-                                }
-                            }
-                        }
-                    }
-                    System.out.println("\n");
-                    // Now that user has used all items or does not want to use them they can finally play their turn
-                    if (shotgun.getBulletCount() > 0) {
-                        // Player turn updated after play is completed
-                        // (player turn again if they shot themselves with blank else player turn is false)
-                        playerTurn = player.playerTurn(shotgun, ai, scan);
-                    }
+    private int readChoice(String retry) {
+        // Tries to get valid input
+        while (true) {
+            if (scan.hasNextInt()) {
+                int reply = scan.nextInt();
+                if (reply == 0 || reply == 1) {
+                    return reply;
                 }
             } else {
-                // if it is ai turn run ai turn
-                playerTurn = aiTurn(player, ai, aiItemRack, shotgun, playerTurn);
+                scan.next();
             }
+            System.out.println(retry);
         }
-        return shotgun;
     }
 
     /**
      * Helper method to get the proper values to use item
-     * @param scan Scanner instance
      * @return index of what item to use
      */
-    private int useItem(Scanner scan) {
+    private int useItem() {
         System.out.println("Which item would you like to choose? \nSaw Blade (0), Magnifying Glass (1), Beer (2), "
                 + "Cigarette (3), Handcuffs (4), or general item information (5).");
         int item;
@@ -158,51 +124,106 @@ public class GameLoop {
     }
 
     /**
-     * AI turn logic
-     * @param player - Human Player
-     * @param ai - AI Player
-     * @param aiItemRack - AI Items Rack
-     * @param shotgun - Shotgun in play
-     * @param playerTurn - What is the player's turn currently
-     * @return playersTurn after method is run. false if it is AI turn again. true if ai turn over.
+     * Shows the health of both players, the new shotgun and the items of the round
+     * @param game - game being played
      */
-    public boolean aiTurn(Player player, Player ai, ItemRack aiItemRack, Shotgun shotgun, boolean playerTurn) {
-        // Dummy initialization
-        int shoot = 9;
-        // AI has 3/5 chance to use item
-        int choice = (int) (Math.random() * 5);
-        while (choice >= 2
-                // AI still has items to use
-                && aiItemRack.getSize() > 0
-                // AI is not handcuffed
-                && !ai.isHandcuffed()
-                // AI has not made decision on whether to shoot or not (magnifying glass will force ai to make decision)
-                && shoot > 1
-                // Human player is also not handcuffed. This way AI doesn't double handcuff.
-                && !player.isHandcuffed()) {
-            // AI has 1/3 chance to use another item
-            choice = (int) (Math.random() * 3);
-            // Uses random item
-            boolean usedItem = false;
-            while (!usedItem) {
-                try {
-                    // Random item is chosen
-                    int item = (int) (Math.random() * 5);
-                    // if use function returns 0 or 1, ai has made decision, else all rest are dummy values
-                    shoot = aiItemRack.use(item, ai, player, shotgun);
-                    usedItem = true;
-                } catch (NoSuchElementException e) {
-                    continue;
-                }
-            }
+    @Override
+    public void roundStarted(GameEngine game) {
+        System.out.println("-----------------------------\nWe are in Round " + game.getRound());
+        System.out.println(game.getName(GameEngine.FIRST) + " has " + game.getHp(GameEngine.FIRST) + " health and "
+                + game.getName(GameEngine.SECOND) + " has " + game.getHp(GameEngine.SECOND) + " health.");
+        System.out.println("A new shotgun is handed over. " + game.describeShotgun());
+        if (game.getItemCount(GameEngine.FIRST) != 0) {
+            System.out.println(game.getName(GameEngine.FIRST) + "'s Item Rack contains "
+                    + game.describeItems(GameEngine.FIRST));
+            System.out.println(game.getName(GameEngine.SECOND) + "'s Item Rack contains "
+                    + game.describeItems(GameEngine.SECOND));
+        }
+    }
 
+    /**
+     * Shows which item was used and what it did
+     * @param game - game being played
+     * @param seat - seat that used the item
+     * @param item - item action that was applied
+     */
+    @Override
+    public void itemUsed(GameEngine game, int seat, GameAction item) {
+        String name = game.getName(seat);
+        System.out.println(name + " is using " + item);
+        switch (item) {
+        case USE_SAW_BLADE:
+            System.out.println(name + " has sawed off the shotgun.");
+            System.out.println("All shots on this shotgun do double damage.\nDouble the Stakes. Double the Fun.");
+            break;
+        case USE_MAGNIFYING_GLASS:
+            System.out.println(name + " has used a Magnifying Glass. They can see what the next bullet is.");
+            break;
+        case USE_CIGARETTE:
+            System.out.println(name + " has smoked a cigarette. They gain one hp.");
+            break;
+        case USE_HANDCUFFS:
+            System.out.printf("%s has handcuffed %s. Their next turn is skipped.\n", name, game.getName(1 - seat));
+            break;
+        default:
+            // Beer is shown by bulletRacked()
+            break;
         }
-        // Finally play AI turn
-        if (shotgun.getBulletCount() > 0 && !ai.aiTurn(shotgun, player, shoot)) {
-            // it has to be player's turn now
-            return true;
+    }
+
+    /**
+     * Shows the human the bullet their Magnifying Glass found
+     * @param game - game being played
+     * @param seat - seat that used the Magnifying Glass
+     * @param blank - whether the next bullet is a blank
+     */
+    @Override
+    public void bulletRevealed(GameEngine game, int seat, boolean blank) {
+        if (seat == this.seat) {
+            System.out.println("The next bullet is " + Bullet.valueOf(blank));
         }
-        // return current player turn
-        return playerTurn;
+    }
+
+    /**
+     * Shows the bullet a Beer racked
+     * @param game - game being played
+     * @param seat - seat that used the Beer
+     * @param blank - whether the racked bullet was a blank
+     */
+    @Override
+    public void bulletRacked(GameEngine game, int seat, boolean blank) {
+        System.out.println(game.getName(seat) + " racked a " + (blank ? "blank" : "loaded") + " bullet!");
+    }
+
+    /**
+     * Shows a shot
+     * @param game - game being played
+     * @param seat - seat that shot
+     * @param atSelf - true if the seat shot itself
+     * @param blank - whether the bullet was a blank
+     */
+    @Override
+    public void shotFired(GameEngine game, int seat, boolean atSelf, boolean blank) {
+        System.out.println(game.getName(seat) + " shot a " + (blank ? "blank" : "loaded") + " bullet"
+                + (atSelf ? " at themself!" : "!"));
+    }
+
+    /**
+     * Shows that the round is over
+     * @param game - game being played
+     */
+    @Override
+    public void roundEnded(GameEngine game) {
+        System.out.println("Shotgun is empty");
+    }
+
+    /**
+     * Shows whether the human won
+     * @param game - game being played
+     * @param winner - seat that is still alive
+     */
+    @Override
+    public void gameOver(GameEngine game, int winner) {
+        System.out.println(game.getName(seat) + (winner == seat ? " won!" : " died!"));
     }
 }
@@ -21,8 +21,6 @@ public class Handcuffs extends Item {
      */
     @Override
     public int use(Player caller, Player otherPlayer, Shotgun shotgun) {
-        System.out.printf("%s has handcuffed %s. Their next turn is skipped.\n",
-                caller.getName(), otherPlayer.getName());
         otherPlayer.handcuff();
         return 9;
     }
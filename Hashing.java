@@ -0,0 +1,23 @@
+/**
+ * Hash helpers shared by the hash tables and filters of the account banks, so they all place a username the same
+ * way.
+ */
+final class Hashing {
+
+    /**
+     * Not instantiable
+     */
+    private Hashing() {
+    }
+
+    /**
+     * Spreads the bits of String.hashCode() over the whole int, so that the low bits used for a table index and the
+     * high bits used for a segment are both well mixed
+     * @param hash hash of the username
+     * @return mixed hash
+     */
+    static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
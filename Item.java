@@ -12,12 +12,13 @@ public abstract class Item {
     public abstract String toString();
 
     /**
-     * Usage of item abstract method.
+     * Usage of item abstract method. Items only change the game, GameEngine tells its listeners what happened.
      * Some item will require these parameters. These parameters are discarded for other items
      * @param caller caller player
      * @param otherPlayer other player
      * @param shotgun current shotgun
-     * @return 0 if shoot other player. 1 if shoot current player. Other numbers are dummy
+     * @return for items that see a bullet (Magnifying Glass, Beer) 1 if it was blank and 0 if it was loaded.
+     * Other numbers are dummy
      */
     public abstract int use(Player caller, Player otherPlayer, Shotgun shotgun);
 
@@ -5,14 +5,23 @@ import java.util.NoSuchElementException;
  * except without most of the functionality of a hashmap.
  */
 public class ItemRack {
+
+    /**
+     * Number of item kinds, the indexes 0 to ITEM_KINDS - 1 of addItem() and GameAction.useItem()
+     */
+    public static final int ITEM_KINDS = 5;
+
     private Item[] backingArray;
+    // Number of items in each LinkedList
+    private int[] counts;
     private int size;
 
     /**
      * Constructor for ItemRack
      */
     public ItemRack() {
-        backingArray = new Item[5];
+        backingArray = new Item[ITEM_KINDS];
+        counts = new int[ITEM_KINDS];
         size = 0;
     }
 
@@ -38,8 +47,9 @@ public class ItemRack {
             addHelper(new Handcuffs(), 4);
             break;
         default:
-            System.out.println("Something is wrong");
+            throw new IllegalArgumentException("There is no item " + i);
         }
+        counts[i]++;
         size++;
     }
 
@@ -62,7 +72,7 @@ public class ItemRack {
      * @param caller caller of this method
      * @param otherPlayer other player in the game
      * @param shotgun current shotgun
-     * @return 0 if shoot other player, 1 if shoot yourself, other if dummy value
+     * @return what the item's use() returned: 1 if the bullet it saw was blank, 0 if loaded, other if dummy value
      */
     public int use(int i, Player caller, Player otherPlayer, Shotgun shotgun) {
         // Checks if null
@@ -72,12 +82,21 @@ public class ItemRack {
         // LinkedList.removeFront();
         Item item = backingArray[i];
         backingArray[i] = backingArray[i].getNext();
+        counts[i]--;
         size--;
-        System.out.println(caller.getName() + " is using " + item.toString());
         // Uses item
         return item.use(caller, otherPlayer, shotgun);
     }
 
+    /**
+     * Returns how many of one item are in the rack
+     * @param i index of the item
+     * @return number of those items
+     */
+    public int getCount(int i) {
+        return counts[i];
+    }
+
     /**
      * Overriding Object's toString Method
      * @return String representation of the ItemRack class
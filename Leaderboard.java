@@ -1,5 +1,9 @@
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Top 10 Leaderboard of the AccountBank. Implemented as a MaxHeap.
@@ -9,6 +13,9 @@ public class Leaderboard {
     // The initial capacity of the MaxHeap when created with the default constructor.
     public static final int INITIAL_CAPACITY = 13;
 
+    // Table slots below which parallelTopK() scans a range on one thread instead of splitting it
+    private static final int SEQUENTIAL_SLOTS = 1 << 16;
+
     private Account[] backingArray;
     private int size;
 
@@ -46,7 +53,8 @@ public class Leaderboard {
         // Creates complete binary tree
         backingArray = new Account[2 * data.length + 1];
         for (int i = 0; i < data.length; i++) {
-            if (data[i] == null) {
+            // Skip empty slots and DEL markers of removed accounts
+            if (data[i] == null || data[i].isRemoved()) {
                 continue;
             }
             Account acc = data[i];
@@ -241,25 +249,286 @@ public class Leaderboard {
     }
 
     /**
-     * Helper method for toString.
-     * MaxHeap remove returns largest value of the MaxHeap. Repeat this 10 times to get Top 10.
-     * Add these top 10 back into the MaxHeap to ensure it is the same still.
+     * Helper method for toString. Reads the top 10 with topK(), the heap is not changed.
      * @return String representation of top 10 accounts
      */
     private String toStringHelper() {
-        HashSet<Account> hashSet = new HashSet<>();
         String out = "";
-        for (int i = 0; i < 10; i++) {
-            if (size == 0) {
+        List<Account> top = topK(10);
+        for (int i = 0; i < top.size(); i++) {
+            out += (i + 1) + ". " + top.get(i);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the k best accounts, best first, without changing the heap.
+     *
+     * The best account is the root. The next best is always a child of an account already taken, so the children
+     * of every taken account go into a small MaxHeap of candidate indexes, and the best candidate is taken next.
+     * The candidate heap never holds more than k + 1 indexes, so this is O(k log k) whatever the size of the
+     * Leaderboard, and only reads backingArray, so readers never see a half changed heap.
+     *
+     * @param k number of accounts to return
+     * @return up to k accounts, best first
+     * @throws java.lang.IllegalArgumentException if k is negative
+     */
+    public List<Account> topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative");
+        }
+        List<Account> out = new ArrayList<>(Math.min(k, size));
+        if (k == 0 || size == 0) {
+            return out;
+        }
+        // 1-indexed MaxHeap of backingArray indexes, like backingArray itself
+        int[] candidates = new int[k + 2];
+        int count = 0;
+        candidates[++count] = 1;
+        while (out.size() < k && count > 0) {
+            int best = candidates[1];
+            out.add(backingArray[best]);
+
+            // Replace the taken candidate with its left child (or the last candidate) and sift it down
+            int left = best * 2;
+            int right = left + 1;
+            candidates[1] = left <= size ? left : candidates[count--];
+            siftDownCandidate(candidates, count, 1);
+            if (right <= size) {
+                candidates[++count] = right;
+                siftUpCandidate(candidates, count);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Selects the k best accounts of an AccountBank table on the common ForkJoin pool, without building a heap of
+     * every account.
+     * @param table - table of the bank, from AccountBank.getTable()
+     * @param k - number of accounts to return
+     * @return up to k accounts, best first
+     * @throws java.lang.IllegalArgumentException if table is null or k is negative
+     */
+    public static List<Account> parallelTopK(Account[] table, int k) {
+        return parallelTopK(table, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Selects the k best accounts of an AccountBank table on a ForkJoin pool.
+     *
+     * The table is split into ranges, each range is scanned into its own bounded MinHeap of its k best accounts,
+     * and the heaps of neighbouring ranges are merged as the tasks join. A full re-rank then costs O(n log k) spread
+     * over every core, instead of copying and heapifying every account on one thread like Leaderboard(Account[]).
+     * Null slots and DEL markers are skipped. The accounts returned are the table's own entries, and the table must
+     * not change while it is read.
+     *
+     * @param table - table of the bank, from AccountBank.getTable()
+     * @param k - number of accounts to return
+     * @param pool - pool to scan the ranges on
+     * @return up to k accounts, best first
+     * @throws java.lang.IllegalArgumentException if table is null or k is negative
+     */
+    public static List<Account> parallelTopK(Account[] table, int k, ForkJoinPool pool) {
+        if (table == null) {
+            throw new IllegalArgumentException("Top K cannot be done on null data structure");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative");
+        }
+        if (k == 0) {
+            return new ArrayList<>();
+        }
+        return pool.invoke(new RangeTopK(table, 0, table.length, k)).drain();
+    }
+
+    /**
+     * Moves a candidate index towards the root of the candidate heap while it beats its parent
+     * @param candidates candidate heap
+     * @param index position of the candidate
+     */
+    private void siftUpCandidate(int[] candidates, int index) {
+        while (index > 1 && backingArray[candidates[index]].compareTo(backingArray[candidates[index / 2]]) > 0) {
+            int temp = candidates[index];
+            candidates[index] = candidates[index / 2];
+            candidates[index / 2] = temp;
+            index /= 2;
+        }
+    }
+
+    /**
+     * Moves a candidate index towards the leaves of the candidate heap while a child beats it
+     * @param candidates candidate heap
+     * @param count number of candidates
+     * @param index position of the candidate
+     */
+    private void siftDownCandidate(int[] candidates, int count, int index) {
+        while (index * 2 <= count) {
+            int child = index * 2;
+            if (child + 1 <= count
+                    && backingArray[candidates[child + 1]].compareTo(backingArray[candidates[child]]) > 0) {
+                child++;
+            }
+            if (backingArray[candidates[child]].compareTo(backingArray[candidates[index]]) <= 0) {
                 break;
             }
-            Account removed = remove();
-            hashSet.add(removed);
-            out += (i + 1) + ". " + removed;
+            int temp = candidates[index];
+            candidates[index] = candidates[child];
+            candidates[child] = temp;
+            index = child;
         }
-        for (Account account : hashSet) {
-            add(account);
+    }
+
+    /**
+     * Finds the k best accounts of a range of the table, splitting it in two while it is large
+     */
+    private static class RangeTopK extends RecursiveTask<BoundedHeap> {
+        private static final long serialVersionUID = 1L;
+
+        private final Account[] table;
+        private final int start;
+        private final int end;
+        private final int k;
+
+        /**
+         * Creates the task for the slots [start, end) of the table
+         * @param table - table to scan
+         * @param start - first slot
+         * @param end - slot after the last one
+         * @param k - number of accounts to keep
+         */
+        RangeTopK(Account[] table, int start, int end, int k) {
+            this.table = table;
+            this.start = start;
+            this.end = end;
+            this.k = k;
+        }
+
+        /**
+         * Scans the range, or splits it and merges the halves
+         * @return the k best accounts of the range
+         */
+        @Override
+        protected BoundedHeap compute() {
+            if (end - start <= SEQUENTIAL_SLOTS) {
+                BoundedHeap heap = new BoundedHeap(k);
+                for (int i = start; i < end; i++) {
+                    Account account = table[i];
+                    if (account != null && !account.isRemoved()) {
+                        heap.offer(account);
+                    }
+                }
+                return heap;
+            }
+            int middle = (start + end) >>> 1;
+            RangeTopK left = new RangeTopK(table, start, middle, k);
+            left.fork();
+            BoundedHeap right = new RangeTopK(table, middle, end, k).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * MinHeap holding at most k accounts, the worst at the root so it is the one replaced by a better account.
+     * Win rates are kept as primitive keys beside the accounts.
+     */
+    private static class BoundedHeap {
+        private final double[] keys;
+        private final Account[] accounts;
+        private int size;
+
+        /**
+         * Creates an empty heap
+         * @param k - number of accounts kept
+         */
+        BoundedHeap(int k) {
+            keys = new double[k];
+            accounts = new Account[k];
+        }
+
+        /**
+         * Keeps an account if the heap is not full or it beats the worst account kept
+         * @param account - account to offer
+         */
+        void offer(Account account) {
+            offer(account.getWinRate(), account);
+        }
+
+        /**
+         * Keeps an account if the heap is not full or it beats the worst account kept
+         * @param key - win rate of the account
+         * @param account - account to offer
+         */
+        private void offer(double key, Account account) {
+            if (size < keys.length) {
+                // Move worse parents down into the hole
+                int index = size++;
+                while (index > 0 && Double.compare(keys[(index - 1) / 2], key) > 0) {
+                    keys[index] = keys[(index - 1) / 2];
+                    accounts[index] = accounts[(index - 1) / 2];
+                    index = (index - 1) / 2;
+                }
+                keys[index] = key;
+                accounts[index] = account;
+            } else if (Double.compare(key, keys[0]) > 0) {
+                keys[0] = key;
+                accounts[0] = account;
+                siftDown();
+            }
+        }
+
+        /**
+         * Offers every account of another heap to this one
+         * @param other - heap of another range
+         * @return the merged heap
+         */
+        BoundedHeap merge(BoundedHeap other) {
+            BoundedHeap small = size < other.size ? this : other;
+            BoundedHeap large = small == this ? other : this;
+            for (int i = 0; i < small.size; i++) {
+                large.offer(small.keys[i], small.accounts[i]);
+            }
+            return large;
+        }
+
+        /**
+         * Empties the heap
+         * @return the accounts it held, best first
+         */
+        List<Account> drain() {
+            Account[] out = new Account[size];
+            while (size > 0) {
+                out[size - 1] = accounts[0];
+                size--;
+                keys[0] = keys[size];
+                accounts[0] = accounts[size];
+                accounts[size] = null;
+                siftDown();
+            }
+            return new ArrayList<>(Arrays.asList(out));
+        }
+
+        /**
+         * Moves the root towards the leaves while one of its children is worse
+         */
+        private void siftDown() {
+            double key = keys[0];
+            Account account = accounts[0];
+            int index = 0;
+            while (index * 2 + 1 < size) {
+                int child = index * 2 + 1;
+                if (child + 1 < size && Double.compare(keys[child + 1], keys[child]) < 0) {
+                    child++;
+                }
+                if (Double.compare(keys[child], key) >= 0) {
+                    break;
+                }
+                keys[index] = keys[child];
+                accounts[index] = accounts[child];
+                index = child;
+            }
+            keys[index] = key;
+            accounts[index] = account;
         }
-        return out;
     }
-}
\ No newline at end of file
+}
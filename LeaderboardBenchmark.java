@@ -0,0 +1,73 @@
+import java.util.Random;
+
+/**
+ * Build heap and remove max throughput of DaryLeaderboard against Leaderboard.
+ * Each run builds a heap from the same accounts and then empties it with remove().
+ *
+ * Run with: java LeaderboardBenchmark [accounts] [arity] [runs]
+ */
+public class LeaderboardBenchmark {
+
+    /**
+     * Runs the benchmark
+     * @param args number of accounts, arity of the DaryLeaderboard and number of runs
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int arity = args.length > 1 ? Integer.parseInt(args[1]) : DaryLeaderboard.DEFAULT_ARITY;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Random random = new Random(42);
+        Account[] accounts = new Account[count];
+        for (int i = 0; i < count; i++) {
+            accounts[i] = new Account("user" + i, "password", random.nextInt(1000), random.nextInt(1000));
+        }
+
+        System.out.println(count + " accounts, " + arity + "-ary heap, " + runs + " runs (the first warms up)");
+        long checksum = 0;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            Leaderboard binary = new Leaderboard(accounts);
+            long built = System.nanoTime();
+            while (!binary.isEmpty()) {
+                checksum += binary.remove().getWins();
+            }
+            long emptied = System.nanoTime();
+
+            DaryLeaderboard dary = new DaryLeaderboard(accounts, arity);
+            long daryBuilt = System.nanoTime();
+            while (!dary.isEmpty()) {
+                checksum += dary.remove().getWins();
+            }
+            long daryEmptied = System.nanoTime();
+
+            System.out.printf("Leaderboard     build %7.1f ms %6.1f M/s   remove %7.1f ms %6.1f M/s%n",
+                    millis(built - start), rate(count, built - start),
+                    millis(emptied - built), rate(count, emptied - built));
+            System.out.printf("DaryLeaderboard build %7.1f ms %6.1f M/s   remove %7.1f ms %6.1f M/s%n",
+                    millis(daryBuilt - emptied), rate(count, daryBuilt - emptied),
+                    millis(daryEmptied - daryBuilt), rate(count, daryEmptied - daryBuilt));
+        }
+        // Printed so the removals cannot be optimized away
+        System.out.println("checksum " + checksum);
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds
+     * @param nanos - duration
+     * @return duration in milliseconds
+     */
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Returns a throughput in millions of operations per second
+     * @param operations - number of operations
+     * @param nanos - time they took
+     * @return millions of operations per second
+     */
+    private static double rate(int operations, long nanos) {
+        return operations / (nanos / 1e3);
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Saved candidates of a LiveLeaderboard, kept beside the account store so the next start can show the leaderboard
+ * without reading every account.
+ *
+ * The file is stamped with the version of the account data it ranks: the stamp and folded log generation of the
+ * AccountStore, and the generation and length of the active ResultLog segment. At startup the snapshot is only
+ * used if the store and the log are still exactly at that version, otherwise the leaderboard is rebuilt.
+ *
+ * Layout of the file:
+ * Header (64 bytes): magic, format version, record count, flags, outsideMax,
+ *                    store stamp, store log generation, log generation, log length, unused
+ * Record (48 bytes): username length, unused, username (32 bytes), wins, losses, unused
+ */
+public class LeaderboardSnapshot {
+
+    /**
+     * Marks the start of every leaderboard snapshot file ("SSLB")
+     */
+    public static final int MAGIC = 0x53534C42;
+
+    /**
+     * Version of the layout written by this class
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 48;
+
+    // Offsets inside the header
+    private static final int COUNT_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 12;
+    private static final int OUTSIDE_MAX_OFFSET = 16;
+    private static final int VERSION_OFFSET = 24;
+    private static final int VERSION_LONGS = 4;
+
+    // Offsets inside a record
+    private static final int USERNAME_LENGTH_OFFSET = 0;
+    private static final int USERNAME_OFFSET = 4;
+    private static final int WINS_OFFSET = USERNAME_OFFSET + AccountStore.FIELD_BYTES;
+    private static final int LOSSES_OFFSET = WINS_OFFSET + 4;
+
+    // Header flags
+    private static final int FLAG_OUTSIDERS = 1;
+
+    private final List<Account> accounts;
+    private final boolean hasOutsiders;
+    private final double outsideMax;
+    private final long[] version;
+
+    /**
+     * Creates a snapshot that has not been saved yet
+     * @param accounts - candidates of the leaderboard
+     * @param hasOutsiders - whether some accounts were left out of the candidates
+     * @param outsideMax - highest win rate of the accounts left out
+     */
+    public LeaderboardSnapshot(List<Account> accounts, boolean hasOutsiders, double outsideMax) {
+        this(accounts, hasOutsiders, outsideMax, null);
+    }
+
+    /**
+     * Creates a snapshot
+     * @param accounts - candidates of the leaderboard
+     * @param hasOutsiders - whether some accounts were left out of the candidates
+     * @param outsideMax - highest win rate of the accounts left out
+     * @param version - version of the account data, or null if it was not read from a file
+     */
+    private LeaderboardSnapshot(List<Account> accounts, boolean hasOutsiders, double outsideMax, long[] version) {
+        this.accounts = accounts;
+        this.hasOutsiders = hasOutsiders;
+        this.outsideMax = outsideMax;
+        this.version = version;
+    }
+
+    /**
+     * Returns the current version of the account data: the store it was loaded from and every record logged after
+     * @param store - store the bank was loaded from
+     * @param log - result log replayed on top of the store
+     * @return version to stamp a snapshot with or compare it to
+     * @throws IOException if the log cannot be flushed
+     */
+    public static long[] version(AccountStore store, ResultLog log) throws IOException {
+        return new long[] {store.getStamp(), store.getLogGeneration(), log.getGeneration(), log.length()};
+    }
+
+    /**
+     * Maps a snapshot file and reads its candidates
+     * @param fileName - name of the snapshot file
+     * @return the snapshot, or null if the file does not exist or is not a snapshot
+     * @throws IOException if the file cannot be read
+     */
+    public static LeaderboardSnapshot read(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return null;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int count = buffer.getInt(COUNT_OFFSET);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || count < 0
+                    || HEADER_SIZE + (long) count * RECORD_SIZE > channel.size()) {
+                return null;
+            }
+            long[] version = new long[VERSION_LONGS];
+            for (int i = 0; i < VERSION_LONGS; i++) {
+                version[i] = buffer.getLong(VERSION_OFFSET + i * 8);
+            }
+            List<Account> accounts = new ArrayList<>(count);
+            byte[] username = new byte[AccountStore.FIELD_BYTES];
+            for (int i = 0; i < count; i++) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                int length = buffer.get(offset + USERNAME_LENGTH_OFFSET) & 0xFF;
+                buffer.get(offset + USERNAME_OFFSET, username, 0, length);
+                // Passwords are not saved, the candidates are only shown until their accounts are loaded
+                accounts.add(new Account(new String(username, 0, length, StandardCharsets.UTF_8), "",
+                        buffer.getInt(offset + WINS_OFFSET), buffer.getInt(offset + LOSSES_OFFSET)));
+            }
+            boolean outsiders = (buffer.getInt(FLAGS_OFFSET) & FLAG_OUTSIDERS) != 0;
+            return new LeaderboardSnapshot(accounts, outsiders, buffer.getDouble(OUTSIDE_MAX_OFFSET), version);
+        }
+    }
+
+    /**
+     * Writes the snapshot into fileName.tmp, then atomically replaces fileName with it
+     * @param fileName - name of the snapshot file
+     * @param version - version of the account data the candidates were taken from
+     * @return false if nothing was written because a username does not fit in a record
+     * @throws IOException if the file cannot be written
+     */
+    public boolean write(String fileName, long[] version) throws IOException {
+        byte[][] usernames = new byte[accounts.size()][];
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = accounts.get(i).getUsername().getBytes(StandardCharsets.UTF_8);
+            if (usernames[i].length > AccountStore.FIELD_BYTES) {
+                return false;
+            }
+        }
+        String tempFileName = fileName + ".tmp";
+        new File(tempFileName).delete();
+        try (RandomAccessFile out = new RandomAccessFile(tempFileName, "rw"); FileChannel channel = out.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) usernames.length * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(COUNT_OFFSET, usernames.length);
+            buffer.putInt(FLAGS_OFFSET, hasOutsiders ? FLAG_OUTSIDERS : 0);
+            buffer.putDouble(OUTSIDE_MAX_OFFSET, outsideMax);
+            for (int i = 0; i < VERSION_LONGS; i++) {
+                buffer.putLong(VERSION_OFFSET + i * 8, version[i]);
+            }
+            for (int i = 0; i < usernames.length; i++) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                buffer.put(offset + USERNAME_LENGTH_OFFSET, (byte) usernames[i].length);
+                buffer.put(offset + USERNAME_OFFSET, usernames[i]);
+                buffer.putInt(offset + WINS_OFFSET, accounts.get(i).getWins());
+                buffer.putInt(offset + LOSSES_OFFSET, accounts.get(i).getLosses());
+            }
+            buffer.force();
+        }
+        Files.move(Paths.get(tempFileName), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * Scans every account of a source and keeps the best ones, for rebuilding a leaderboard off the main thread
+     * @param source - source to scan, only read
+     * @param capacity - number of candidates to keep
+     * @return the best accounts of the source and the highest win rate of the rest
+     */
+    static LeaderboardSnapshot scan(AccountSource source, int capacity) {
+        // MinHeap by win rate, the worst candidate is the one dropped
+        PriorityQueue<Account> best = new PriorityQueue<>(capacity + 1);
+        double[] outsideMax = new double[1];
+        boolean[] outsiders = new boolean[1];
+        source.forEachAccount(account -> {
+            best.add(account);
+            if (best.size() > capacity) {
+                double dropped = best.poll().getWinRate();
+                if (!outsiders[0] || Double.compare(dropped, outsideMax[0]) > 0) {
+                    outsideMax[0] = dropped;
+                }
+                outsiders[0] = true;
+            }
+        });
+        return new LeaderboardSnapshot(new ArrayList<>(best), outsiders[0], outsideMax[0]);
+    }
+
+    /**
+     * Checks whether the snapshot was taken from exactly this version of the account data
+     * @param current - version from version()
+     * @return true if the candidates can be restored
+     */
+    public boolean matches(long[] current) {
+        if (version == null || current.length != VERSION_LONGS) {
+            return false;
+        }
+        for (int i = 0; i < VERSION_LONGS; i++) {
+            if (version[i] != current[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the saved candidates
+     * @return candidates, in no particular order
+     */
+    public List<Account> getAccounts() {
+        return Collections.unmodifiableList(accounts);
+    }
+
+    /**
+     * Returns whether some accounts were left out of the candidates
+     * @return true if there are accounts outside the snapshot
+     */
+    public boolean hasOutsiders() {
+        return hasOutsiders;
+    }
+
+    /**
+     * Returns the highest win rate of the accounts left out of the candidates
+     * @return upper bound of every other account's win rate
+     */
+    public double getOutsideMax() {
+        return outsideMax;
+    }
+}
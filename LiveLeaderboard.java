@@ -0,0 +1,365 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Top K Leaderboard that stays live instead of being rebuilt from the whole AccountBank after every game.
+ *
+ * Listens to the bank and keeps a bounded MinHeap of the best 2K accounts it has seen, keyed by the win rate each
+ * had when it last changed. An update moves one account up or down the heap, or swaps it with the worst account
+ * of a full heap, in O(log K). Accounts that are not in the heap all had a win rate of at most outsideMax when
+ * they were last seen, so the heap's top K are exact as long as they all rank at least that high. When removals
+ * or falling win rates break that, the heap is refilled from the bank once.
+ *
+ * The heap and its outsideMax can be saved as a LeaderboardSnapshot and restored at the next start, or refilled
+ * from an AccountSource on a background thread, so the first showing does not have to wait for every account.
+ *
+ * Not thread safe, like AccountBank.
+ */
+public class LiveLeaderboard implements AccountListener {
+
+    /**
+     * Number of accounts shown by default
+     */
+    public static final int DEFAULT_SIZE = 10;
+
+    private final int k;
+    private final AccountBank bank;
+    // MinHeap of the candidates (worst at index 0) and the win rate each was ranked with
+    private Account[] heap;
+    private double[] keys;
+    // Username -> heap index
+    private HashMap<String, Integer> positions;
+    private int size;
+    // Upper bound of the win rate of every account that is not in the heap
+    private double outsideMax;
+    private boolean hasOutsiders;
+    // The heap has to be refilled from the bank before it is read
+    private boolean stale;
+    // Background scan of the source, installed the next time the leaderboard is read
+    private FutureTask<LeaderboardSnapshot> pending;
+
+    /**
+     * Creates a leaderboard of the best DEFAULT_SIZE accounts of a bank
+     * @param bank - bank to rank
+     */
+    public LiveLeaderboard(AccountBank bank) {
+        this(bank, DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates a leaderboard of the best k accounts of a bank and subscribes it to the bank.
+     * The accounts are only read the first time the leaderboard is shown.
+     * @param bank - bank to rank
+     * @param k - number of accounts shown
+     * @throws java.lang.IllegalArgumentException if k is not positive
+     */
+    public LiveLeaderboard(AccountBank bank, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Leaderboard size must be positive");
+        }
+        this.k = k;
+        this.bank = bank;
+        heap = new Account[2 * k];
+        keys = new double[2 * k];
+        positions = new HashMap<>();
+        stale = true;
+        bank.addListener(this);
+    }
+
+    /**
+     * Re-ranks an account after it changed
+     * @param account - the entry now stored in the bank
+     */
+    @Override
+    public void accountUpdated(Account account) {
+        if (!stale) {
+            offer(account);
+        }
+    }
+
+    /**
+     * Drops a removed account from the candidates
+     * @param account - the removed entry
+     */
+    @Override
+    public void accountRemoved(Account account) {
+        Integer index = positions.remove(account.getUsername());
+        if (stale || index == null) {
+            return;
+        }
+        size--;
+        if (index < size) {
+            heap[index] = heap[size];
+            keys[index] = keys[size];
+            positions.put(heap[index].getUsername(), index);
+            siftDown(siftUp(index));
+        }
+        heap[size] = null;
+    }
+
+    /**
+     * Forgets every candidate. The bank may still have a source, so the heap is refilled when next shown.
+     */
+    @Override
+    public void accountsCleared() {
+        reset();
+        stale = true;
+        pending = null;
+    }
+
+    /**
+     * Returns the best accounts, best first. Costs O(K log K) unless the heap has to be refilled from the bank.
+     * @return up to k accounts
+     */
+    public List<Account> top() {
+        if (pending != null) {
+            installPending();
+        }
+        Integer[] order = stale ? new Integer[0] : sortedIndexes();
+        // The top K are only exact if none of the accounts outside the heap can rank above them
+        if (stale || hasOutsiders && (order.length < k || compare(keys[order[k - 1]], outsideMax) < 0)) {
+            rebuild();
+            order = sortedIndexes();
+        }
+        List<Account> out = new ArrayList<>();
+        for (int i = 0; i < order.length && i < k; i++) {
+            out.add(heap[order[i]]);
+        }
+        return out;
+    }
+
+    /**
+     * Refills the heap from every account of the bank
+     */
+    public void rebuild() {
+        reset();
+        stale = false;
+        pending = null;
+        bank.forEachAccount(this::offer);
+    }
+
+    /**
+     * Starts refilling the heap from a source on a background daemon thread. Until it is installed by the next
+     * read, changes are not followed one by one; the accounts the bank has loaded are offered again on install.
+     * @param source - source the bank was loaded from, read concurrently with the bank
+     */
+    public void rebuildInBackground(AccountSource source) {
+        reset();
+        stale = true;
+        int capacity = heap.length;
+        pending = new FutureTask<>(() -> LeaderboardSnapshot.scan(source, capacity));
+        Thread thread = new Thread(pending, "leaderboard-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Restores the candidates saved by snapshot(). Only valid if the source holds the same data it held when the
+     * snapshot was taken; the accounts the bank has loaded or changed since are offered again.
+     * @param snapshot - saved candidates
+     */
+    public void restore(LeaderboardSnapshot snapshot) {
+        pending = null;
+        install(snapshot);
+    }
+
+    /**
+     * Returns the current candidates and the bound on every other account, for saving with LeaderboardSnapshot
+     * @return snapshot of the heap
+     */
+    public LeaderboardSnapshot snapshot() {
+        // Makes the heap exact first
+        top();
+        List<Account> candidates = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            candidates.add(heap[i]);
+        }
+        return new LeaderboardSnapshot(candidates, hasOutsiders, outsideMax);
+    }
+
+    /**
+     * Waits for the background scan and installs it, or refills from the bank if the scan failed
+     */
+    private void installPending() {
+        try {
+            LeaderboardSnapshot scanned = pending.get();
+            pending = null;
+            install(scanned);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rebuild();
+        } catch (ExecutionException e) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Fills the heap from saved or scanned candidates, then offers every account the bank holds in memory, since
+     * those may have changed or been removed since the candidates were taken from the source
+     * @param candidates - candidates taken from the source
+     */
+    private void install(LeaderboardSnapshot candidates) {
+        reset();
+        stale = false;
+        for (Account account : candidates.getAccounts()) {
+            offer(account);
+        }
+        if (candidates.hasOutsiders()) {
+            markOutsider(candidates.getOutsideMax());
+        }
+        for (Account account : bank.getTable()) {
+            if (account == null) {
+                continue;
+            }
+            if (account.isRemoved()) {
+                accountRemoved(account);
+            } else {
+                offer(account);
+            }
+        }
+    }
+
+    /**
+     * Overrides Object's toString Method
+     * @return String representation of the top accounts, in the same format as Leaderboard
+     */
+    @Override
+    public String toString() {
+        String out = "----------------------------------\nLeaderboard:\n";
+        List<Account> top = top();
+        for (int i = 0; i < top.size(); i++) {
+            out += (i + 1) + ". " + top.get(i);
+        }
+        out += "----------------------------------\n";
+        return out;
+    }
+
+    /**
+     * Adds or re-ranks an account. A full heap only takes an account that ranks above its worst candidate,
+     * which then becomes an outsider.
+     * @param account - account to rank
+     */
+    private void offer(Account account) {
+        double key = account.getWinRate();
+        Integer index = positions.get(account.getUsername());
+        if (index != null) {
+            // The bank may store a new object for the same username
+            heap[index] = account;
+            keys[index] = key;
+            siftDown(siftUp(index));
+        } else if (size < heap.length) {
+            heap[size] = account;
+            keys[size] = key;
+            positions.put(account.getUsername(), size);
+            siftUp(size++);
+        } else if (compare(key, keys[0]) > 0) {
+            markOutsider(keys[0]);
+            positions.remove(heap[0].getUsername());
+            heap[0] = account;
+            keys[0] = key;
+            positions.put(account.getUsername(), 0);
+            siftDown(0);
+        } else {
+            markOutsider(key);
+        }
+    }
+
+    /**
+     * Records the win rate of an account that is left out of the heap
+     * @param key - its win rate
+     */
+    private void markOutsider(double key) {
+        if (!hasOutsiders || compare(key, outsideMax) > 0) {
+            outsideMax = key;
+        }
+        hasOutsiders = true;
+    }
+
+    /**
+     * Empties the heap
+     */
+    private void reset() {
+        Arrays.fill(heap, null);
+        positions.clear();
+        size = 0;
+        hasOutsiders = false;
+    }
+
+    /**
+     * Returns the heap indexes ordered from best to worst candidate
+     * @return sorted heap indexes
+     */
+    private Integer[] sortedIndexes() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(keys[b], keys[a]));
+        return order;
+    }
+
+    /**
+     * Moves a candidate towards the root while it ranks below its parent
+     * @param index - heap index of the candidate
+     * @return its new index
+     */
+    private int siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (compare(keys[index], keys[parent]) >= 0) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+        return index;
+    }
+
+    /**
+     * Moves a candidate towards the leaves while one of its children ranks below it
+     * @param index - heap index of the candidate
+     */
+    private void siftDown(int index) {
+        while (2 * index + 1 < size) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && compare(keys[child + 1], keys[child]) < 0) {
+                child++;
+            }
+            if (compare(keys[index], keys[child]) <= 0) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    /**
+     * Swaps two candidates and updates their positions
+     * @param a - heap index
+     * @param b - heap index
+     */
+    private void swap(int a, int b) {
+        Account account = heap[a];
+        heap[a] = heap[b];
+        heap[b] = account;
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        positions.put(heap[a].getUsername(), a);
+        positions.put(heap[b].getUsername(), b);
+    }
+
+    /**
+     * Orders win rates the same way Account.compareTo() does
+     * @param a - win rate
+     * @param b - win rate
+     * @return positive if a ranks higher, negative if lower, zero if equal
+     */
+    private static int compare(double a, double b) {
+        return Double.compare(a, b);
+    }
+}
@@ -7,24 +7,11 @@ public class MagnifyingGlass extends Item {
      * @param caller caller player
      * @param otherPlayer other player
      * @param shotgun current shotgun
-     * @return if ai called this method, 0 if should shoot human, 1 if should shoot itself, and dummy value if not ai
+     * @return 1 if the next bullet is blank (the caller should shoot itself), 0 if it is loaded
      */
     @Override
     public int use(Player caller, Player otherPlayer, Shotgun shotgun) {
-        Bullet bullet = shotgun.peek();
-        System.out.println(caller.getName() + " has used a Magnifying Glass. They can see what the next bullet is.");
-
-        if (caller.isAI()) {
-            if (bullet.isBlank()) {
-                return 1;
-            } else {
-                return 0;
-            }
-        } else {
-            System.out.println("The next bullet is " + bullet);
-        }
-
-        return 9;
+        return shotgun.peekBlank() ? 1 : 0;
     }
 
     /**
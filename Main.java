@@ -1,10 +1,7 @@
 import java.util.NoSuchElementException;
 import java.util.Scanner;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 
 /**
  * @author Yuvraj Dhadwal
@@ -22,25 +19,39 @@ public class Main {
     public static void main(String[] args) {
         Scanner scan = new Scanner(System.in);
 
-        // Read past accounts and add them to accountBank
+        // Open the binary account store. The first run imports the old text file into it
         String fileName = "accountBank.txt";
+        String storeFileName = "accountBank.dat";
+        String logFileName = "accountBank.log";
+        String leaderboardFileName = "accountBank.top";
         AccountBank accountBank = new AccountBank();
+        // Follows every game so showing it does not need every account
+        LiveLeaderboard leaderboard = new LiveLeaderboard(accountBank);
+        // Counts the games of the last 7 days, including the ones replayed from the log
+        WindowedLeaderboard weeklyLeaderboard = WindowedLeaderboard.weekly(accountBank);
+        AccountStore accountStore = null;
+        ResultLog resultLog = null;
+        Thread compactor = null;
         try {
-            FileReader fileReader = new FileReader(fileName);
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line;
-
-            // Read each line until end of file
-            while ((line = bufferedReader.readLine()) != null) {
-                String[] parts = line.split(" ");
-                String username = parts[0];
-                String password = parts[1];
-                int wins = Integer.parseInt(parts[2]);
-                int losses = Integer.parseInt(parts[3]);
-                Account account = new Account(username, password, wins, losses);
-                accountBank.put(account);
+            if (new File(storeFileName).exists()) {
+                accountStore = AccountStore.open(storeFileName);
+            } else {
+                accountStore = AccountStore.importText(fileName, storeFileName);
+            }
+            // Accounts are only read from the store when someone logs into them
+            accountBank.setSource(accountStore);
+            // Replay games that finished after the snapshot was taken
+            resultLog = ResultLog.open(logFileName, accountStore.getLogGeneration(), accountBank);
+            // Reuse the saved leaderboard if no account changed since it was saved, otherwise rank in the background
+            LeaderboardSnapshot savedLeaderboard = LeaderboardSnapshot.read(leaderboardFileName);
+            if (savedLeaderboard != null
+                    && savedLeaderboard.matches(LeaderboardSnapshot.version(accountStore, resultLog))) {
+                leaderboard.restore(savedLeaderboard);
+            } else {
+                leaderboard.rebuildInBackground(accountStore);
             }
-            bufferedReader.close();
+            // Fold the replayed games into the store while the player logs in
+            compactor = new ResultLogCompactor(resultLog, storeFileName).start();
         } catch (IOException e) {
             System.out.println("An error occurred while reading the file.");
             e.printStackTrace();
@@ -72,26 +83,24 @@ public class Main {
         // Create new account based on new credentials
         if (newAccount) {
             System.out.println("Please enter new username: ");
-            username = scan.nextLine();
+            username = readField(scan, "username");
+            while (accountBank.contains(username)) {
+                System.out.println("That username is taken. Please enter new username: ");
+                username = readField(scan, "username");
+            }
             System.out.println("Please enter new password: ");
-            password = scan.nextLine();
+            password = readField(scan, "password");
             account = new Account(username, password);
-        // Create account with existing values
+            accountBank.put(account);
+        // Use the stored account
         } else {
-            Account oldAccount = accountBank.getAccount(new Account(username, password));
-            account = new Account(oldAccount.getUsername(), oldAccount.getPassword(),
-                    oldAccount.getWins(), oldAccount.getLosses());
+            account = accountBank.getAccount(new Account(username, password));
         }
 
-        // Create the players
-        Player player = new Player(5, account.getUsername(), false);
-        Player ai = new Player(5, "Your Opponent", true);
-
-        int roundNumber = 1;
-        int bullets;
-        Shotgun shotgun = new Shotgun(5);
-        boolean firstRound = true;
-        GameLoop gameLoop = new GameLoop();
+        // The engine runs the rules, the console adapter talks to the human in the first seat
+        GameEngine game = new GameEngine(account.getUsername(), "Your Opponent");
+        GameLoop console = new GameLoop(scan, GameEngine.FIRST);
+        game.addListener(console);
 
         System.out.println("Welcome to Shotgun Roulette!");
         System.out.println("A simple game. We have a shotgun in the middle and you have three choices.");
@@ -101,71 +110,57 @@ public class Main {
         System.out.println("The twist? Some of the bullets in the shotgun are blanks. "
                 + "And if you shoot a blank at yourself you get a new turn.");
 
+        // Whole game, round after round until someone dies
+        boolean won = game.play(console, new BasicAi()) == GameEngine.FIRST;
 
-        // Whole Game Loop for every round
-        while (firstRound || gameLoop.continueGame(player, ai, shotgun, account)) {
-            firstRound = false;
-            System.out.println("-----------------------------\nWe are in Round " + roundNumber);
-            System.out.println(player.getName() + " has " + player.getHp() + " health and "
-                    + ai.getName() + " has " + ai.getHp() + " health.");
-
-            // Set bullets for the round
-            bullets = roundNumber * 2 + 1;
-            shotgun = new Shotgun(bullets);
-
-            // Set items for the round
-            ItemRack playerItemRack = new ItemRack();
-            ItemRack aiItemRack = new ItemRack();
-            for (int i = 0; i < bullets / 4; i++) {
-                playerItemRack.addItem((int) (Math.random() * 5));
-                aiItemRack.addItem((int) (Math.random() * 5));
-            }
-
-            // Load shotgun
-            while (bullets > 0) {
-                boolean isBlank = Math.random() > 0.5;
-                shotgun.load(new Bullet(isBlank));
-                bullets--;
-            }
-
-            System.out.println("A new shotgun is handed over. " + shotgun);
-            if (playerItemRack.getSize() != 0) {
-                System.out.println(player.getName() + "'s Item Rack contains " + playerItemRack);
-                System.out.println(ai.getName() + "'s Item Rack contains " + aiItemRack);
-            }
-
-            // Free players from handcuffs at start of new round
-            player.free();
-            ai.free();
+        // Game Over. Update the stored account so the leaderboards count the game
+        accountBank.recordResult(account.getUsername(), won);
 
-            // Round Loop
-            shotgun = gameLoop.gameLoop(shotgun, player, ai, scan, playerItemRack, aiItemRack);
-
-            roundNumber++;
+        // Save the changed account in the background, the leaderboard does not wait for the disk
+        AccountPersistence persistence = null;
+        if (resultLog != null) {
+            persistence = new AccountPersistence(accountBank, resultLog);
+            persistence.submit();
         }
 
-        // Game Over. Update account
-        accountBank.put(account);
-
-        // Print accountBank into a file
-        try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
+        // Print Leaderboard
+        System.out.println(leaderboard);
+        System.out.println(weeklyLeaderboard);
 
-            // Write each element of the array to the file
-            for (int i = 0; i < accountBank.getTable().length; i++) {
-                Account acc = accountBank.getTable()[i];
-                if (acc != null) {
-                    writer.write(acc.toFileString());
-                    writer.newLine(); // Move to the next line
-                }
+        // Wait for the save and the compactor before exiting
+        if (persistence != null) {
+            try {
+                persistence.close();
+                compactor.join();
+                // Save the leaderboard stamped with the store the compactor left and the records logged after it
+                AccountStore compacted = AccountStore.open(storeFileName);
+                long[] version = LeaderboardSnapshot.version(compacted, resultLog);
+                compacted.close();
+                leaderboard.snapshot().write(leaderboardFileName, version);
+                resultLog.close();
+                accountStore.close();
+            } catch (IOException e) {
+                System.out.println("An error occurred while writing to the file.");
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            writer.close();
-        } catch (IOException e) {
-            System.out.println("An error occurred while writing to the file.");
-            e.printStackTrace();
         }
+    }
 
-        // Print Leaderboard
-        System.out.println(new Leaderboard(accountBank.getTable()));
+    /**
+     * Reads a username or password for a new account until it is not empty and fits in an AccountStore record
+     * @param scan - Scanner object instance
+     * @param field - name of the field, shown when asking again
+     * @return the entered value
+     */
+    private static String readField(Scanner scan, String field) {
+        String value = scan.nextLine();
+        while (value.isEmpty() || !AccountStore.fits(value)) {
+            System.out.println("The " + field + " must be between 1 and " + AccountStore.FIELD_BYTES
+                    + " bytes long. Please enter new " + field + ": ");
+            value = scan.nextLine();
+        }
+        return value;
     }
-}
\ No newline at end of file
+}
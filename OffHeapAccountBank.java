@@ -0,0 +1,538 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * AccountBank whose table lives outside the Java heap, so tens of millions of accounts add nothing for the garbage
+ * collector to scan. Implemented as a Linear Probing HashMap over fixed size slots that use the AccountStore record
+ * layout (hash, flags, lengths, username, password, wins, losses).
+ *
+ * The slots are split over pages of direct ByteBuffers, since one buffer cannot be larger than 2GB. The table can
+ * also be backed by a file: the pages are then mapped from the file, and open() reattaches to the table after a
+ * restart without rehashing anything.
+ *
+ * Accounts are only turned into Account objects when asked for, so getAccount() returns a copy.
+ * Use recordResult() to change wins and losses. Call close() when done with the bank.
+ */
+public class OffHeapAccountBank {
+
+    /**
+     * Marks the start of every off-heap table file ("SSOH")
+     */
+    public static final int MAGIC = 0x53534F48;
+
+    /**
+     * The initial capacity of the table when created with the default constructor.
+     */
+    public static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The max load factor of the table, counting DEL markers.
+     */
+    public static final double MAX_LOAD_FACTOR = 0.67;
+
+    public static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = AccountStore.RECORD_SIZE;
+
+    // 2^20 slots of 80 bytes per page
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SLOTS = 1 << PAGE_BITS;
+
+    // Offsets inside the header
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int USED_OFFSET = 24;
+
+    private final String fileName;
+    private ByteBuffer header;
+    private ByteBuffer[] pages;
+    private long capacity;
+    private long size;
+    private long used;
+
+    /**
+     * Constructs a new heap-free bank held in direct memory only
+     */
+    public OffHeapAccountBank() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs a new bank held in direct memory only, sized for expectedSize accounts
+     * @param expectedSize number of accounts expected in the bank
+     */
+    public OffHeapAccountBank(long expectedSize) {
+        this.fileName = null;
+        try {
+            allocate(capacityFor(expectedSize));
+        } catch (IOException e) {
+            // Only file backed tables can fail to allocate
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Opens a file backed bank. An existing file is reattached as it is, a missing file is created empty.
+     * @param fileName name of the table file
+     * @param expectedSize number of accounts expected if the file has to be created
+     * @throws IOException if the file cannot be mapped or is not an off-heap table
+     */
+    private OffHeapAccountBank(String fileName, long expectedSize) throws IOException {
+        this.fileName = fileName;
+        File file = new File(fileName);
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            allocate(capacityFor(expectedSize));
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(fileName + " is not an off-heap account table");
+            }
+            capacity = header.getLong(CAPACITY_OFFSET);
+            size = header.getLong(SIZE_OFFSET);
+            used = header.getLong(USED_OFFSET);
+            pages = mapPages(channel, capacity);
+        } finally {
+            // Mappings stay valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Opens a file backed bank, reattaching to the table in the file if it exists
+     * @param fileName name of the table file
+     * @return the bank
+     * @throws IOException if the file cannot be mapped or is not an off-heap table
+     */
+    public static OffHeapAccountBank open(String fileName) throws IOException {
+        return new OffHeapAccountBank(fileName, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Opens a file backed bank, creating it sized for expectedSize accounts if it does not exist
+     * @param fileName name of the table file
+     * @param expectedSize number of accounts expected in the bank
+     * @return the bank
+     * @throws IOException if the file cannot be mapped or is not an off-heap table
+     */
+    public static OffHeapAccountBank open(String fileName, long expectedSize) throws IOException {
+        return new OffHeapAccountBank(fileName, expectedSize);
+    }
+
+    /**
+     * Adds the given account, replacing the account with the same username if there is one.
+     * @param account the account to add
+     * @return null if the username was not in the bank, the old username otherwise
+     * @throws java.lang.IllegalArgumentException if account, its username or its password is null or too long
+     * @throws java.io.UncheckedIOException if a file backed table cannot grow
+     * @throws java.lang.IllegalStateException if the bank is closed
+     */
+    public String put(Account account) {
+        if (account == null || account.getUsername() == null || account.getPassword() == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        checkOpen();
+        byte[] username = encode(account.getUsername());
+        byte[] password = encode(account.getPassword());
+        if (used + 1 > capacity * MAX_LOAD_FACTOR) {
+            // Grow if mostly live accounts, otherwise rebuilding at the same size drops the DEL markers
+            try {
+                rebuild(size + 1 > capacity / 2 ? capacity * 2 : capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        int hash = account.getUsername().hashCode();
+        long slot = find(hash, username);
+        String out = null;
+        if (slot >= 0) {
+            out = account.getUsername();
+        } else {
+            long mask = capacity - 1;
+            slot = mix(hash) & mask;
+            while (flags(slot) == AccountStore.FLAG_USED) {
+                slot = (slot + 1) & mask;
+            }
+            if (flags(slot) == 0) {
+                used++;
+            }
+            size++;
+        }
+        ByteBuffer page = page(slot);
+        int offset = offset(slot);
+        page.putInt(offset + AccountStore.HASH_OFFSET, hash);
+        page.put(offset + AccountStore.FLAGS_OFFSET, AccountStore.FLAG_USED);
+        page.put(offset + AccountStore.USERNAME_LENGTH_OFFSET, (byte) username.length);
+        page.put(offset + AccountStore.PASSWORD_LENGTH_OFFSET, (byte) password.length);
+        page.put(offset + AccountStore.USERNAME_OFFSET, username);
+        page.put(offset + AccountStore.PASSWORD_OFFSET, password);
+        page.putInt(offset + AccountStore.COUNTER_OFFSET, account.getWins());
+        page.putInt(offset + AccountStore.COUNTER_OFFSET + 4, account.getLosses());
+        writeHeader();
+        return out;
+    }
+
+    /**
+     * Removes the account with the same username by marking its slot as a DEL marker
+     * @param account account to be removed
+     * @return username of the removed account
+     * @throws java.lang.IllegalArgumentException if account is null
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public String remove(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        long slot = slotOf(account.getUsername());
+        page(slot).put(offset(slot) + AccountStore.FLAGS_OFFSET, AccountStore.FLAG_REMOVED);
+        size--;
+        writeHeader();
+        return account.getUsername();
+    }
+
+    /**
+     * Checks whether there is account in the bank that has the same username and password as the parameters.
+     * The password is compared in place, no Account is created.
+     * @param username username provided by user
+     * @param password password provided by user
+     * @return true if valid account credentials. false if invalid account credentials
+     * @throws java.util.NoSuchElementException if the username is not in the bank
+     */
+    public boolean checkValue(String username, String password) {
+        long slot = slotOf(username);
+        byte[] bytes = password.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer page = page(slot);
+        int offset = offset(slot);
+        return page.get(offset + AccountStore.PASSWORD_LENGTH_OFFSET) == bytes.length
+                && equalBytes(page, offset + AccountStore.PASSWORD_OFFSET, bytes);
+    }
+
+    /**
+     * Returns a copy of the account with the same username
+     * @param account account knowing username
+     * @return account given username, password, wins, and losses
+     * @throws java.lang.IllegalArgumentException if account is null
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public Account getAccount(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        return materialize(slotOf(account.getUsername()));
+    }
+
+    /**
+     * Adds a finished game to an account in place
+     * @param username username of the account
+     * @param won true if the game was won, false if it was lost
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public void recordResult(String username, boolean won) {
+        long slot = slotOf(username);
+        int offset = offset(slot) + AccountStore.COUNTER_OFFSET + (won ? 0 : 4);
+        ByteBuffer page = page(slot);
+        page.putInt(offset, page.getInt(offset) + 1);
+    }
+
+    /**
+     * Returns the size of the bank.
+     * @return the size of the bank
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots in the table
+     * @return capacity of the table
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Finds the slot of a username
+     * @param username username to look for
+     * @return slot number
+     * @throws java.util.NoSuchElementException if the username is not in the bank
+     */
+    private long slotOf(String username) {
+        long slot = find(username.hashCode(), username.getBytes(StandardCharsets.UTF_8));
+        if (slot < 0) {
+            throw new NoSuchElementException("Key is not in map");
+        }
+        return slot;
+    }
+
+    /**
+     * Probes for a username, comparing the stored hash before the username bytes
+     * @param hash String.hashCode() of the username
+     * @param username UTF-8 bytes of the username
+     * @return slot number, or -1 if the username is not in the bank
+     */
+    private long find(int hash, byte[] username) {
+        checkOpen();
+        long mask = capacity - 1;
+        long slot = mix(hash) & mask;
+        byte flag;
+        while ((flag = flags(slot)) != 0) {
+            ByteBuffer page = page(slot);
+            int offset = offset(slot);
+            if (flag == AccountStore.FLAG_USED && page.getInt(offset + AccountStore.HASH_OFFSET) == hash
+                    && page.get(offset + AccountStore.USERNAME_LENGTH_OFFSET) == username.length
+                    && equalBytes(page, offset + AccountStore.USERNAME_OFFSET, username)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Creates an Account from a slot
+     * @param slot slot number
+     * @return account stored in the slot
+     */
+    private Account materialize(long slot) {
+        ByteBuffer page = page(slot);
+        int offset = offset(slot);
+        byte[] username = new byte[page.get(offset + AccountStore.USERNAME_LENGTH_OFFSET)];
+        byte[] password = new byte[page.get(offset + AccountStore.PASSWORD_LENGTH_OFFSET)];
+        page.get(offset + AccountStore.USERNAME_OFFSET, username);
+        page.get(offset + AccountStore.PASSWORD_OFFSET, password);
+        return new Account(new String(username, StandardCharsets.UTF_8), new String(password, StandardCharsets.UTF_8),
+                page.getInt(offset + AccountStore.COUNTER_OFFSET), page.getInt(offset + AccountStore.COUNTER_OFFSET + 4));
+    }
+
+    /**
+     * Rehashes every live slot into a new table. A file backed table is rebuilt in a new file that then replaces
+     * the old one.
+     * @param newCapacity new number of slots, a power of two
+     * @throws IOException if a file backed table cannot be written
+     */
+    private void rebuild(long newCapacity) throws IOException {
+        ByteBuffer[] oldPages = pages;
+        long oldCapacity = capacity;
+        String tempFileName = fileName == null ? null : fileName + ".tmp";
+        allocate(newCapacity, tempFileName);
+        long mask = capacity - 1;
+        byte[] record = new byte[SLOT_SIZE];
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            ByteBuffer oldPage = oldPages[(int) (slot >>> PAGE_BITS)];
+            int oldOffset = offset(slot);
+            if (oldPage.get(oldOffset + AccountStore.FLAGS_OFFSET) == AccountStore.FLAG_USED) {
+                long target = mix(oldPage.getInt(oldOffset + AccountStore.HASH_OFFSET)) & mask;
+                while (flags(target) != 0) {
+                    target = (target + 1) & mask;
+                }
+                oldPage.get(oldOffset, record);
+                page(target).put(offset(target), record);
+            }
+        }
+        used = size;
+        writeHeader();
+        if (fileName != null) {
+            force();
+            if (!new File(tempFileName).renameTo(new File(fileName))) {
+                throw new IOException("Could not replace " + fileName);
+            }
+        }
+    }
+
+    /**
+     * Flushes a file backed table to disk. Does nothing for a table in direct memory only.
+     */
+    public void force() {
+        checkOpen();
+        if (fileName == null) {
+            return;
+        }
+        ((MappedByteBuffer) header).force();
+        for (ByteBuffer page : pages) {
+            ((MappedByteBuffer) page).force();
+        }
+    }
+
+    /**
+     * Flushes a file backed table and drops every page, so the direct memory or the mappings are released once the
+     * buffers are garbage collected. The bank cannot be used afterwards, a file backed bank can be reattached with
+     * open(). Closing a closed bank does nothing.
+     */
+    public void close() {
+        if (pages == null) {
+            return;
+        }
+        force();
+        header = null;
+        pages = null;
+    }
+
+    /**
+     * Checks that close() has not been called
+     * @throws java.lang.IllegalStateException if the bank is closed
+     */
+    private void checkOpen() {
+        if (pages == null) {
+            throw new IllegalStateException("Off-heap account bank is closed");
+        }
+    }
+
+    /**
+     * Allocates an empty table in direct memory or in the bank's file
+     * @param newCapacity number of slots, a power of two
+     * @throws IOException if the file cannot be mapped
+     */
+    private void allocate(long newCapacity) throws IOException {
+        allocate(newCapacity, fileName);
+    }
+
+    /**
+     * Allocates an empty table
+     * @param newCapacity number of slots, a power of two
+     * @param file file to map the table from, or null for direct memory
+     * @throws IOException if the file cannot be mapped
+     */
+    private void allocate(long newCapacity, String file) throws IOException {
+        capacity = newCapacity;
+        if (file == null) {
+            header = ByteBuffer.allocateDirect(HEADER_SIZE);
+            int pageCount = (int) ((newCapacity + PAGE_SLOTS - 1) >>> PAGE_BITS);
+            pages = new ByteBuffer[pageCount];
+            for (int i = 0; i < pageCount; i++) {
+                long slots = Math.min(PAGE_SLOTS, newCapacity - ((long) i << PAGE_BITS));
+                pages[i] = ByteBuffer.allocateDirect((int) (slots * SLOT_SIZE));
+            }
+        } else {
+            new File(file).delete();
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                FileChannel channel = raf.getChannel();
+                header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                pages = mapPages(channel, newCapacity);
+            } finally {
+                raf.close();
+            }
+        }
+        header.putInt(0, MAGIC);
+        used = 0;
+        writeHeader();
+    }
+
+    /**
+     * Maps every page of a table file
+     * @param channel channel of the file
+     * @param slots number of slots in the table
+     * @return mapped pages
+     * @throws IOException if the file cannot be mapped
+     */
+    private static ByteBuffer[] mapPages(FileChannel channel, long slots) throws IOException {
+        int pageCount = (int) ((slots + PAGE_SLOTS - 1) >>> PAGE_BITS);
+        ByteBuffer[] mapped = new ByteBuffer[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            long first = (long) i << PAGE_BITS;
+            long pageSlots = Math.min(PAGE_SLOTS, slots - first);
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + first * SLOT_SIZE,
+                    pageSlots * SLOT_SIZE);
+        }
+        return mapped;
+    }
+
+    /**
+     * Stores capacity, size and used slots in the header so a file backed table can be reattached
+     */
+    private void writeHeader() {
+        header.putLong(CAPACITY_OFFSET, capacity);
+        header.putLong(SIZE_OFFSET, size);
+        header.putLong(USED_OFFSET, used);
+    }
+
+    /**
+     * Returns the flag byte of a slot
+     * @param slot slot number
+     * @return 0 if empty, AccountStore.FLAG_USED or AccountStore.FLAG_REMOVED
+     */
+    private byte flags(long slot) {
+        return page(slot).get(offset(slot) + AccountStore.FLAGS_OFFSET);
+    }
+
+    /**
+     * Returns the page holding a slot
+     * @param slot slot number
+     * @return page buffer
+     */
+    private ByteBuffer page(long slot) {
+        return pages[(int) (slot >>> PAGE_BITS)];
+    }
+
+    /**
+     * Returns the byte offset of a slot inside its page
+     * @param slot slot number
+     * @return offset inside the page
+     */
+    private static int offset(long slot) {
+        return (int) (slot & (PAGE_SLOTS - 1)) * SLOT_SIZE;
+    }
+
+    /**
+     * Compares bytes with a field of a page
+     * @param page page buffer
+     * @param offset offset of the field
+     * @param bytes bytes to compare
+     * @return true if the field starts with bytes
+     */
+    private static boolean equalBytes(ByteBuffer page, int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (page.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes a username or password and checks that it fits in its slot field
+     * @param value username or password
+     * @return UTF-8 bytes of value
+     */
+    private static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > AccountStore.FIELD_BYTES) {
+            throw new IllegalArgumentException("Username or password cannot be longer than "
+                    + AccountStore.FIELD_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the power of two number of slots that holds expectedSize accounts under the max load factor
+     * @param expectedSize number of accounts expected
+     * @return number of slots
+     */
+    private static long capacityFor(long expectedSize) {
+        long slots = INITIAL_CAPACITY;
+        while (expectedSize >= slots * MAX_LOAD_FACTOR) {
+            slots *= 2;
+        }
+        return slots;
+    }
+
+    /**
+     * Spreads the bits of String.hashCode() over a long so the low bits used for the slot are well mixed
+     * @param hash hash of the username
+     * @return mixed hash, never negative
+     */
+    private static long mix(int hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 32)) & Long.MAX_VALUE;
+    }
+}
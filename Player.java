@@ -1,5 +1,3 @@
-import java.util.Scanner;
-
 /**
  * Player class for each player of the game.
  */
@@ -101,92 +99,4 @@ public class Player {
     public void free() {
         handcuffed = false;
     }
-
-    /**
-     * Player turn
-     * @param shotgun current shotgun
-     * @param otherPlayer other player
-     * @param choice player choice
-     * @return whether player gets to play again
-     */
-    public boolean turn(Shotgun shotgun, Player otherPlayer, int choice) {
-        // Initially you cannot play again
-        boolean playAgain = false;
-        // Skip turn if handcuffed
-        if (!handcuffed) {
-            switch (choice) {
-            case 0:
-                if (shotgun.shoot().isBlank()) {
-                    System.out.println(this.name + " shot a blank bullet!");
-                } else {
-                    System.out.println(this.name + " shot a loaded bullet!");
-                    otherPlayer.shot(shotgun.isSawedOff());
-                }
-                break;
-            case 1:
-                if (shotgun.shoot().isBlank()) {
-                    System.out.println(this.name + " shot a blank bullet at themself!");
-                    playAgain = true;
-                } else {
-                    System.out.println(this.name + " shot a loaded bullet at themself!");
-                    this.shot(shotgun.isSawedOff());
-                }
-                break;
-            default:
-                System.out.println("An issue has occurred. I am not sure why.");
-            }
-        }
-        // Frees player at end of turn
-        handcuffed = false;
-        return playAgain;
-    }
-
-    /**
-     * Turn but for Human Players
-     * @param shotgun current shotgun
-     * @param ai ai player
-     * @param scan scanner object
-     * @return if player gets to play again
-     */
-    public boolean playerTurn(Shotgun shotgun, Player ai, Scanner scan) {
-        System.out.println("Would you like to shoot enemy (0) or shoot yourself (1)?");
-        int reply;
-        while (true) {
-            if (scan.hasNextInt()) {
-                reply = scan.nextInt();
-                if (reply == 0 || reply == 1) {
-                    break;
-                }
-            }
-            System.out.println("Please enter the value (0) or (1).");
-            scan.next();
-        }
-        return this.turn(shotgun, ai, reply);
-    }
-
-    /**
-     * Generic random AI choice for how to use turn
-     * @param shotgun current shotgun
-     * @param human human player
-     * @return whether ai gets to play again
-     */
-    public boolean aiTurn(Shotgun shotgun, Player human) {
-        int choice = (int) (Math.random() * 2);
-        return this.turn(shotgun, human, choice);
-    }
-
-    /**
-     * AI choice after using magnifying glass and it knows exactly what move to make
-     * @param shotgun - current shotgun
-     * @param human - human player
-     * @param choice - choice to make
-     * @return true if ai gets to play again
-     */
-    public boolean aiTurn(Shotgun shotgun, Player human, int choice) {
-        // if choice is invalid, call generic function
-        if (choice > 2) {
-            return this.aiTurn(shotgun, human);
-        }
-        return this.turn(shotgun, human, choice);
-    }
 }
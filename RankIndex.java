@@ -0,0 +1,658 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Order statistic index of the accounts of an AccountBank, answering "what rank am I?" without draining a heap.
+ *
+ * Win rates are quantized into BUCKETS buckets (plus one bucket above them for accounts without games, which
+ * Account.compareTo() ranks highest). A Fenwick tree counts the accounts of every bucket with the best bucket
+ * first, so the number of accounts ranked above a bucket, and the bucket holding the n-th best account, are both
+ * O(log BUCKETS). Accounts in the same bucket share a rank. Each bucket also keeps its accounts in a treap ordered
+ * by id and counting the accounts under every node, so the accounts at a rank, a page of the leaderboard or a range
+ * of win rates can be streamed without a scan, and a page that starts deep inside a bucket finds its first account
+ * in O(log n) instead of walking past the accounts of earlier pages.
+ *
+ * Accounts are kept in parallel primitive arrays indexed by an id, with a username -> id Linear Probing HashMap.
+ * Those cost about 26 bytes per account, on top of the Fenwick tree and bucket roots, which take 8 MB however few
+ * accounts there are. The index also holds the Account of every id, to return it from queries and to compare
+ * usernames. Accounts the bank has loaded are shared with it, but an account the bank streams from its source
+ * without loading it is held only by the index, and a full Account with its two Strings is about 170 bytes. So
+ * beyond the fixed 8 MB, a ranked account costs about 26 bytes when the bank holds it and about 200 bytes when it
+ * is only in the source. The index follows the bank as an AccountListener, so every win, loss, new account and
+ * removal moves one account in O(log BUCKETS + log n). It is filled from the bank the first time it is queried.
+ *
+ * Not thread safe, like AccountBank.
+ */
+public class RankIndex implements AccountListener {
+
+    /**
+     * Number of win rate buckets. Win rates closer than 1 / BUCKETS can share a rank.
+     */
+    public static final int BUCKETS = 1 << 20;
+
+    // Bucket of accounts that have not played yet, their win rate is NaN
+    private static final int UNPLAYED = BUCKETS;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final AccountBank bank;
+    // Fenwick tree over BUCKETS + 1 positions, position 1 is the best bucket
+    private int[] tree;
+    // Root account id of the treap of every bucket
+    private int[] heads;
+
+    // Account of every id, its bucket, its children in the bucket's treap and the size of its subtree.
+    // Treap priorities are the mixed ids, so they are not stored
+    private Account[] accounts;
+    private int[] buckets;
+    private int[] left;
+    private int[] right;
+    private int[] counts;
+    // Ids that were freed by removals, chained through left
+    private int freeIds;
+    private int idCount;
+
+    // Username hash -> id + 1, 0 is empty. Removal shifts entries back so there are no DEL markers
+    private int[] slots;
+    private int size;
+    private boolean stale;
+
+    /**
+     * Creates the index of a bank and subscribes it to the bank.
+     * The accounts are only read the first time the index is queried.
+     * @param bank - bank to rank
+     */
+    public RankIndex(AccountBank bank) {
+        this.bank = bank;
+        stale = true;
+        bank.addListener(this);
+    }
+
+    /**
+     * Returns the rank of an account, 1 being the best. Accounts with the same win rate share a rank.
+     * @param username - username of the account
+     * @return rank of the account
+     * @throws java.util.NoSuchElementException if the account is not ranked
+     */
+    public int rankOf(String username) {
+        ensureBuilt();
+        int id = find(username);
+        if (id == NONE) {
+            throw new NoSuchElementException("Account is not ranked");
+        }
+        return sum(position(buckets[id]) - 1) + 1;
+    }
+
+    /**
+     * Returns the accounts that share the rank of the rank-th best account
+     * @param rank - position to look at, 1 being the best
+     * @return every account with the same rank as the account at that position
+     * @throws java.lang.IllegalArgumentException if rank is not between 1 and size()
+     */
+    public List<Account> accountsAt(int rank) {
+        ensureBuilt();
+        if (rank < 1 || rank > size) {
+            throw new IllegalArgumentException("Rank must be between 1 and " + size);
+        }
+        List<Account> out = new ArrayList<>();
+        stream(heads[bucketAt(positionOfRank(rank))], 0, Integer.MAX_VALUE, out::add);
+        return out;
+    }
+
+    /**
+     * Streams one page of the leaderboard, best first. Costs O(log n) to find the first account of the page inside
+     * its bucket, plus O(log BUCKETS) per distinct win rate and O(1) amortized per account streamed. Tied accounts
+     * come in order of their ids, so pages read while the index does not change neither repeat nor skip one.
+     * @param page - page number, 1 being the best accounts
+     * @param pageSize - accounts per page
+     * @param sink - gets every account of the page
+     * @return number of accounts streamed, less than pageSize on the last page
+     * @throws java.lang.IllegalArgumentException if page or pageSize is not positive
+     */
+    public int page(int page, int pageSize, Consumer<? super Account> sink) {
+        if (page < 1 || pageSize < 1) {
+            throw new IllegalArgumentException("Page and page size must be positive");
+        }
+        ensureBuilt();
+        long first = (long) (page - 1) * pageSize + 1;
+        if (first > size) {
+            return 0;
+        }
+        int rank = (int) first;
+        int streamed = 0;
+        while (streamed < pageSize && rank <= size) {
+            int position = positionOfRank(rank);
+            // Accounts of this bucket that were on earlier pages
+            int skip = rank - sum(position - 1) - 1;
+            streamed += stream(heads[bucketAt(position)], skip, pageSize - streamed, sink);
+            rank = sum(position) + 1;
+        }
+        return streamed;
+    }
+
+    /**
+     * Streams every account with a win rate between min and max, best first. Accounts that have not played have
+     * no win rate and are never streamed. Costs O(log BUCKETS) per distinct win rate streamed, plus the accounts
+     * of the two edge buckets that fall just outside the range.
+     * @param min - lowest win rate, inclusive
+     * @param max - highest win rate, inclusive
+     * @param sink - gets every account in the range
+     * @return number of accounts streamed
+     * @throws java.lang.IllegalArgumentException if min is above max or either is NaN
+     */
+    public int range(double min, double max, Consumer<? super Account> sink) {
+        if (!(min <= max)) {
+            throw new IllegalArgumentException("Win rate range is empty");
+        }
+        ensureBuilt();
+        if (max < 0.0 || min > 1.0) {
+            return 0;
+        }
+        int lowest = bucketOf(Math.max(min, 0.0));
+        int rank = sum(position(bucketOf(Math.min(max, 1.0))) - 1) + 1;
+        int[] streamed = new int[1];
+        while (rank <= size) {
+            int position = positionOfRank(rank);
+            if (bucketAt(position) < lowest) {
+                break;
+            }
+            stream(heads[bucketAt(position)], 0, Integer.MAX_VALUE, account -> {
+                // Edge buckets can hold win rates just outside the range
+                double winRate = account.getWinRate();
+                if (winRate >= min && winRate <= max) {
+                    sink.accept(account);
+                    streamed[0]++;
+                }
+            });
+            rank = sum(position) + 1;
+        }
+        return streamed[0];
+    }
+
+    /**
+     * Returns the number of ranked accounts
+     * @return number of accounts
+     */
+    public int size() {
+        ensureBuilt();
+        return size;
+    }
+
+    /**
+     * Re-ranks an account after it changed
+     * @param account - the entry now stored in the bank
+     */
+    @Override
+    public void accountUpdated(Account account) {
+        if (stale) {
+            return;
+        }
+        int id = find(account.getUsername());
+        if (id == NONE) {
+            add(account);
+            return;
+        }
+        // The bank may store a new object for the same username
+        accounts[id] = account;
+        int bucket = bucketOf(account);
+        if (bucket != buckets[id]) {
+            unlink(id);
+            link(id, bucket);
+        }
+    }
+
+    /**
+     * Drops a removed account
+     * @param account - the removed entry
+     */
+    @Override
+    public void accountRemoved(Account account) {
+        if (stale) {
+            return;
+        }
+        int id = removeSlot(account.getUsername());
+        if (id != NONE) {
+            unlink(id);
+            accounts[id] = null;
+            left[id] = freeIds;
+            freeIds = id;
+            size--;
+        }
+    }
+
+    /**
+     * Forgets every account. The bank may still have a source, so the index is refilled when next queried.
+     */
+    @Override
+    public void accountsCleared() {
+        stale = true;
+    }
+
+    /**
+     * Refills the index from every account of the bank
+     */
+    public void rebuild() {
+        tree = new int[UNPLAYED + 2];
+        heads = new int[UNPLAYED + 1];
+        Arrays.fill(heads, NONE);
+        allocate(INITIAL_CAPACITY);
+        freeIds = NONE;
+        idCount = 0;
+        size = 0;
+        stale = false;
+        bank.forEachAccount(this::add);
+    }
+
+    /**
+     * Fills the index if it has not been filled yet
+     */
+    private void ensureBuilt() {
+        if (stale) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Ranks an account that is not in the index yet
+     * @param account - account to add
+     */
+    private void add(Account account) {
+        int id;
+        if (freeIds != NONE) {
+            id = freeIds;
+            freeIds = left[id];
+        } else {
+            if (idCount == accounts.length) {
+                grow();
+            }
+            id = idCount++;
+        }
+        accounts[id] = account;
+        putSlot(account.getUsername().hashCode(), id);
+        link(id, bucketOf(account));
+        size++;
+    }
+
+    /**
+     * Puts an id in its bucket's treap and counts it in the tree
+     * @param id - account id
+     * @param bucket - its bucket
+     */
+    private void link(int id, int bucket) {
+        buckets[id] = bucket;
+        left[id] = NONE;
+        right[id] = NONE;
+        counts[id] = 1;
+        heads[bucket] = insert(heads[bucket], id);
+        update(position(bucket), 1);
+    }
+
+    /**
+     * Takes an id out of its bucket's treap and the tree
+     * @param id - account id
+     */
+    private void unlink(int id) {
+        int bucket = buckets[id];
+        heads[bucket] = delete(heads[bucket], id);
+        update(position(bucket), -1);
+    }
+
+    /**
+     * Inserts a single node into a treap
+     * @param root - root of the treap, or NONE
+     * @param id - node to insert, with no children
+     * @return new root of the treap
+     */
+    private int insert(int root, int id) {
+        if (root == NONE) {
+            return id;
+        }
+        if (id < root) {
+            left[root] = insert(left[root], id);
+            if (priority(left[root]) > priority(root)) {
+                return rotateRight(root);
+            }
+        } else {
+            right[root] = insert(right[root], id);
+            if (priority(right[root]) > priority(root)) {
+                return rotateLeft(root);
+            }
+        }
+        counts[root]++;
+        return root;
+    }
+
+    /**
+     * Deletes a node from a treap
+     * @param root - root of the treap holding id
+     * @param id - node to delete
+     * @return new root of the treap
+     */
+    private int delete(int root, int id) {
+        if (root == id) {
+            return merge(left[root], right[root]);
+        }
+        if (id < root) {
+            left[root] = delete(left[root], id);
+        } else {
+            right[root] = delete(right[root], id);
+        }
+        counts[root]--;
+        return root;
+    }
+
+    /**
+     * Joins two treaps where every id of the first is below every id of the second
+     * @param low - treap of the lower ids, or NONE
+     * @param high - treap of the higher ids, or NONE
+     * @return root of the joined treap
+     */
+    private int merge(int low, int high) {
+        if (low == NONE) {
+            return high;
+        }
+        if (high == NONE) {
+            return low;
+        }
+        if (priority(low) > priority(high)) {
+            right[low] = merge(right[low], high);
+            resize(low);
+            return low;
+        }
+        left[high] = merge(low, left[high]);
+        resize(high);
+        return high;
+    }
+
+    /**
+     * Rotates the left child of a node above it
+     * @param id - node to rotate down
+     * @return the new root of the subtree
+     */
+    private int rotateRight(int id) {
+        int child = left[id];
+        left[id] = right[child];
+        right[child] = id;
+        resize(id);
+        resize(child);
+        return child;
+    }
+
+    /**
+     * Rotates the right child of a node above it
+     * @param id - node to rotate down
+     * @return the new root of the subtree
+     */
+    private int rotateLeft(int id) {
+        int child = right[id];
+        right[id] = left[child];
+        left[child] = id;
+        resize(id);
+        resize(child);
+        return child;
+    }
+
+    /**
+     * Recounts the subtree of a node from its children
+     * @param id - node whose children are up to date
+     */
+    private void resize(int id) {
+        counts[id] = 1 + count(left[id]) + count(right[id]);
+    }
+
+    /**
+     * Returns the number of accounts in a subtree
+     * @param id - root of the subtree, or NONE
+     * @return number of accounts
+     */
+    private int count(int id) {
+        return id == NONE ? 0 : counts[id];
+    }
+
+    /**
+     * Returns the treap priority of an id
+     * @param id - account id
+     * @return priority, spread by mixing the id
+     */
+    private static int priority(int id) {
+        return Hashing.mix(id);
+    }
+
+    /**
+     * Streams the accounts of a bucket's treap in id order, starting at an offset. The path to the first account
+     * is found through the subtree counts, then the walk carries on in order with a stack of the ancestors still
+     * to come.
+     * @param root - root of the treap, or NONE
+     * @param skip - number of accounts to skip
+     * @param limit - most accounts to stream
+     * @param sink - gets the accounts
+     * @return number of accounts streamed
+     */
+    private int stream(int root, int skip, int limit, Consumer<? super Account> sink) {
+        int[] stack = new int[16];
+        int depth = 0;
+        int id = root;
+        while (id != NONE) {
+            int before = count(left[id]);
+            if (skip < before) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = id;
+                id = left[id];
+            } else if (skip == before) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = id;
+                break;
+            } else {
+                skip -= before + 1;
+                id = right[id];
+            }
+        }
+        int streamed = 0;
+        while (depth > 0 && streamed < limit) {
+            id = stack[--depth];
+            sink.accept(accounts[id]);
+            streamed++;
+            for (int child = right[id]; child != NONE; child = left[child]) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = child;
+            }
+        }
+        return streamed;
+    }
+
+    /**
+     * Adds to the count of a position of the Fenwick tree
+     * @param position - 1 based position
+     * @param delta - change of the count
+     */
+    private void update(int position, int delta) {
+        for (; position < tree.length; position += position & -position) {
+            tree[position] += delta;
+        }
+    }
+
+    /**
+     * Counts the accounts in positions 1 to position
+     * @param position - last 1 based position counted
+     * @return number of accounts
+     */
+    private int sum(int position) {
+        int out = 0;
+        for (; position > 0; position -= position & -position) {
+            out += tree[position];
+        }
+        return out;
+    }
+
+    /**
+     * Finds the tree position holding the rank-th best account by descending the Fenwick tree
+     * @param rank - 1 based rank, at most size
+     * @return 1 based position
+     */
+    private int positionOfRank(int rank) {
+        int position = 0;
+        int remaining = rank;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            if (position + step < tree.length && tree[position + step] < remaining) {
+                position += step;
+                remaining -= tree[position];
+            }
+        }
+        return position + 1;
+    }
+
+    /**
+     * Returns the bucket of an account. Higher win rates get higher buckets.
+     * @param account - account to place
+     * @return bucket between 0 and UNPLAYED
+     */
+    private static int bucketOf(Account account) {
+        return bucketOf(account.getWinRate());
+    }
+
+    /**
+     * Returns the bucket of a win rate
+     * @param winRate - win rate between 0 and 1, or NaN
+     * @return bucket between 0 and UNPLAYED
+     */
+    private static int bucketOf(double winRate) {
+        if (Double.isNaN(winRate)) {
+            return UNPLAYED;
+        }
+        return (int) (winRate * (BUCKETS - 1) + 0.5);
+    }
+
+    /**
+     * Maps a bucket to its tree position, the best bucket being position 1
+     * @param bucket - bucket
+     * @return 1 based position
+     */
+    private static int position(int bucket) {
+        return UNPLAYED - bucket + 1;
+    }
+
+    /**
+     * Maps a tree position back to its bucket
+     * @param position - 1 based position
+     * @return bucket
+     */
+    private static int bucketAt(int position) {
+        return UNPLAYED - position + 1;
+    }
+
+    /**
+     * Finds the id of a username
+     * @param username - username to look for
+     * @return id, or NONE if the username is not ranked
+     */
+    private int find(String username) {
+        int mask = slots.length - 1;
+        int index = Hashing.mix(username.hashCode()) & mask;
+        while (slots[index] != 0) {
+            int id = slots[index] - 1;
+            if (accounts[id].getUsername().equals(username)) {
+                return id;
+            }
+            index = (index + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Adds an id to the username map
+     * @param hash - hash of the username
+     * @param id - id of the account
+     */
+    private void putSlot(int hash, int id) {
+        if ((size + 1) * 3 > slots.length * 2) {
+            rehash(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        int index = Hashing.mix(hash) & mask;
+        while (slots[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        slots[index] = id + 1;
+    }
+
+    /**
+     * Removes a username from the username map, shifting the rest of its cluster back
+     * @param username - username to remove
+     * @return id it had, or NONE if it was not ranked
+     */
+    private int removeSlot(String username) {
+        int mask = slots.length - 1;
+        int index = Hashing.mix(username.hashCode()) & mask;
+        while (slots[index] != 0 && !accounts[slots[index] - 1].getUsername().equals(username)) {
+            index = (index + 1) & mask;
+        }
+        if (slots[index] == 0) {
+            return NONE;
+        }
+        int id = slots[index] - 1;
+        // Backward shift: move later entries of the cluster into the hole if their home slot allows it
+        int hole = index;
+        for (int i = (hole + 1) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int home = Hashing.mix(accounts[slots[i] - 1].getUsername().hashCode()) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                slots[hole] = slots[i];
+                hole = i;
+            }
+        }
+        slots[hole] = 0;
+        return id;
+    }
+
+    /**
+     * Rebuilds the username map at a new capacity
+     * @param capacity - new capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        int[] old = slots;
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int slot : old) {
+            if (slot != 0) {
+                int index = Hashing.mix(accounts[slot - 1].getUsername().hashCode()) & mask;
+                while (slots[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = slot;
+            }
+        }
+    }
+
+    /**
+     * Allocates empty id arrays and username map
+     * @param capacity - number of ids
+     */
+    private void allocate(int capacity) {
+        accounts = new Account[capacity];
+        buckets = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        counts = new int[capacity];
+        slots = new int[capacity * 2];
+    }
+
+    /**
+     * Doubles the id arrays
+     */
+    private void grow() {
+        int capacity = accounts.length * 2;
+        accounts = Arrays.copyOf(accounts, capacity);
+        buckets = Arrays.copyOf(buckets, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+    }
+}
@@ -0,0 +1,573 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of account changes. Changes taken from AccountBank.takeChanges() are appended through
+ * logChanges() and fsynced before they are considered saved. An account whose only change is finished games is
+ * logged as a result record of (username, wins, losses) to add, replayed one game at a time; an account that was
+ * added, replaced or removed is logged whole and replaying it replaces the account. Batches logged at the same
+ * time share one fsync (group commit): whichever thread gets to the disk first writes and syncs every record that
+ * is waiting.
+ *
+ * The log is split into generations. The active segment is fileName, rotated segments are fileName.generation.
+ * ResultLogCompactor folds rotated segments into the AccountStore in place and then deletes them.
+ *
+ * Segment layout: magic, generation, then records of (payload length, CRC32 of payload, payload).
+ */
+public class ResultLog {
+
+    /**
+     * Marks the start of every log segment ("SSWL")
+     */
+    public static final int MAGIC = 0x5353574C;
+
+    public static final int SEGMENT_HEADER_SIZE = 12;
+
+    // Record types
+    static final byte TYPE_RESULT = 1;
+    static final byte TYPE_ACCOUNT = 2;
+
+    private final String fileName;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long generation;
+
+    // Records appended but not yet written. Swapped out whole by the thread doing the group commit
+    private ByteArrayOutputStream pending;
+    private long appendedCount;
+    private long durableCount;
+    private boolean syncing;
+    private IOException failure;
+
+    /**
+     * Opens the active segment. Use open() instead of calling this directly.
+     * @param fileName - name of the active log segment
+     * @param generation - generation to give the segment if it has to be created
+     * @throws IOException if the segment cannot be opened
+     */
+    private ResultLog(String fileName, long generation) throws IOException {
+        this.fileName = fileName;
+        this.pending = new ByteArrayOutputStream();
+        openSegment(generation);
+    }
+
+    /**
+     * Replays every segment newer than the snapshot on top of the AccountBank, then opens the log for appending.
+     * Segments that are already folded into the snapshot are deleted. Reading stops at the first torn or corrupt
+     * record, and the active segment is truncated there so new records are never written after garbage.
+     * @param fileName - name of the active log segment
+     * @param snapshotGeneration - AccountStore.getLogGeneration() of the snapshot the bank was loaded from
+     * @param bank - AccountBank loaded from the snapshot
+     * @return log ready for appending
+     * @throws IOException if a segment cannot be read
+     */
+    public static ResultLog open(String fileName, long snapshotGeneration, AccountBank bank) throws IOException {
+        long newestGeneration = snapshotGeneration;
+        for (long segmentGeneration : rotatedGenerations(fileName)) {
+            File segment = new File(fileName + "." + segmentGeneration);
+            if (segmentGeneration > snapshotGeneration) {
+                replay(segment, bank);
+                newestGeneration = segmentGeneration;
+            } else {
+                segment.delete();
+            }
+        }
+
+        File active = new File(fileName);
+        long validLength = -1;
+        long activeGeneration = newestGeneration + 1;
+        if (active.exists() && active.length() >= SEGMENT_HEADER_SIZE) {
+            activeGeneration = readGeneration(active);
+            if (activeGeneration > snapshotGeneration) {
+                validLength = replay(active, bank);
+            } else {
+                // Already folded, start over with the next generation
+                active.delete();
+                activeGeneration = newestGeneration + 1;
+            }
+        } else {
+            active.delete();
+        }
+
+        // Everything replayed is already durable in the log
+        bank.forgetChanges();
+        ResultLog log = new ResultLog(fileName, activeGeneration);
+        if (validLength >= 0) {
+            log.channel.truncate(validLength);
+            log.channel.position(validLength);
+        }
+        return log;
+    }
+
+    /**
+     * Durably logs several account changes with a single fsync. A change that is only finished games is logged as
+     * the games to add. Any other change is logged as the whole account, which replaces the account on replay, or
+     * removes it if isRemoved() is set. An account that was not taken from AccountBank.takeChanges() is logged
+     * whole.
+     * @param changes - changes to log, for example from AccountBank.takeChanges()
+     * @throws IOException if the log cannot be written
+     * @throws java.lang.IllegalArgumentException if an account does not fit in an AccountStore record, in which
+     *     case nothing is logged
+     */
+    public void logChanges(Collection<Account> changes) throws IOException {
+        // Reject the batch before writing anything, a record the store cannot hold would stop every compaction
+        for (Account account : changes) {
+            AccountStore.checkFields(account);
+        }
+        byte[][] payloads = new byte[changes.size()][];
+        int i = 0;
+        for (Account account : changes) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(bytes);
+            if (account.isOnlyGames()) {
+                payload.writeByte(TYPE_RESULT);
+                payload.writeUTF(account.getUsername());
+                payload.writeInt(account.getNewWins());
+                payload.writeInt(account.getNewLosses());
+            } else {
+                writeAccount(payload, account);
+            }
+            payloads[i++] = bytes.toByteArray();
+        }
+        append(payloads);
+    }
+
+    /**
+     * Replaces a rotated segment with one that logs every account of it whole, for example in the state the
+     * segment leaves it in. Replaying the new segment gives the same accounts as the old one, and replaying it
+     * again or on top of a store it was partly folded into is harmless. The new segment is synced before it is
+     * renamed over the old one, so a crash leaves one or the other.
+     * @param segment - rotated segment to replace
+     * @param generation - generation of the segment
+     * @param accounts - accounts to log, isRemoved() set for removed ones
+     * @throws IOException if the new segment cannot be written or renamed
+     */
+    static void rewrite(File segment, long generation, Collection<Account> accounts) throws IOException {
+        byte[][] payloads = new byte[accounts.size()][];
+        int i = 0;
+        for (Account account : accounts) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeAccount(new DataOutputStream(bytes), account);
+            payloads[i++] = bytes.toByteArray();
+        }
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putLong(generation);
+
+        File temp = new File(segment.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(header.array());
+            out.write(frame(payloads));
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), segment.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the payload of a whole-account record
+     * @param payload - where to write
+     * @param account - account to log
+     * @throws IOException if the payload cannot be written
+     */
+    private static void writeAccount(DataOutputStream payload, Account account) throws IOException {
+        payload.writeByte(TYPE_ACCOUNT);
+        payload.writeUTF(account.getUsername());
+        payload.writeUTF(account.getPassword());
+        payload.writeInt(account.getWins());
+        payload.writeInt(account.getLosses());
+        payload.writeBoolean(account.isRemoved());
+    }
+
+    /**
+     * Frames record payloads with their length and CRC32, ready to be written to a segment
+     * @param payloads - record payloads
+     * @return framed records
+     */
+    private static byte[] frame(byte[]... payloads) {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+            record.putInt(payload.length);
+            record.putInt((int) crc.getValue());
+            record.put(payload);
+            records.write(record.array(), 0, record.capacity());
+        }
+        return records.toByteArray();
+    }
+
+    /**
+     * Closes the active segment at the end of the active generation and starts a new one.
+     * The closed segment is renamed to fileName.generation so it can be folded by the compactor.
+     * @return generation of the closed segment, or -1 if it had no records and was kept
+     * @throws IOException if the segment cannot be renamed or the new one cannot be opened
+     */
+    public synchronized long rotate() throws IOException {
+        // Wait for the group commit in flight, then flush whatever is still pending
+        while (syncing) {
+            waitQuietly();
+        }
+        writePending();
+        if (channel.size() <= SEGMENT_HEADER_SIZE) {
+            return -1;
+        }
+        long closed = generation;
+        channel.close();
+        file.close();
+        if (!new File(fileName).renameTo(new File(fileName + "." + closed))) {
+            throw new IOException("Could not rotate " + fileName);
+        }
+        openSegment(closed + 1);
+        return closed;
+    }
+
+    /**
+     * Returns the name of the active segment
+     * @return file name
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the generation of the active segment
+     * @return active generation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Flushes pending records and returns the length of the active segment. Together with getGeneration() it
+     * identifies every record logged so far.
+     * @return length of the active segment in bytes
+     * @throws IOException if the segment cannot be written
+     */
+    public synchronized long length() throws IOException {
+        while (syncing) {
+            waitQuietly();
+        }
+        writePending();
+        return channel.size();
+    }
+
+    /**
+     * Flushes pending records and closes the active segment
+     * @throws IOException if the segment cannot be written or closed
+     */
+    public synchronized void close() throws IOException {
+        while (syncing) {
+            waitQuietly();
+        }
+        writePending();
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * Reads every valid record of a segment and applies it to a consumer
+     * @param segment - segment file to read
+     * @param applier - what to do with each record
+     * @return length of the valid prefix of the segment
+     * @throws IOException if the segment cannot be read
+     */
+    static long read(File segment, RecordApplier applier) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+        long position = SEGMENT_HEADER_SIZE;
+        try {
+            in.readInt();
+            in.readLong();
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > 1 << 16) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                String username = record.readUTF();
+                if (type == TYPE_RESULT) {
+                    applier.result(username, record.readInt(), record.readInt());
+                } else if (type == TYPE_ACCOUNT) {
+                    Account account = new Account(username, record.readUTF(), record.readInt(), record.readInt());
+                    account.setRemoved(record.readBoolean());
+                    applier.account(account);
+                } else {
+                    // Not a record this version writes, treat it like a corrupt one
+                    break;
+                }
+                position += 8 + length;
+            }
+        } finally {
+            in.close();
+        }
+        return position;
+    }
+
+    /**
+     * Applies the records of a segment to an AccountBank
+     * @param segment - segment file to replay
+     * @param bank - bank to update
+     * @return length of the valid prefix of the segment
+     * @throws IOException if the segment cannot be read
+     */
+    private static long replay(File segment, AccountBank bank) throws IOException {
+        return read(segment, new RecordApplier() {
+            @Override
+            public void result(String username, int winDelta, int lossDelta) {
+                try {
+                    // One game at a time, so listeners such as WindowedLeaderboard count every replayed game
+                    for (int i = 0; i < winDelta; i++) {
+                        bank.recordResult(username, true);
+                    }
+                    for (int i = 0; i < lossDelta; i++) {
+                        bank.recordResult(username, false);
+                    }
+                } catch (NoSuchElementException e) {
+                    // Account was created in a segment that no longer exists, nothing to update
+                }
+            }
+
+            @Override
+            public void account(Account account) {
+                if (!account.isRemoved()) {
+                    bank.put(account);
+                    return;
+                }
+                try {
+                    bank.remove(account);
+                } catch (NoSuchElementException e) {
+                    // Already removed
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a logged result to an account
+     * @param account - account to update
+     * @param winDelta - wins to add
+     * @param lossDelta - losses to add
+     */
+    static void apply(Account account, int winDelta, int lossDelta) {
+        for (int i = 0; i < winDelta; i++) {
+            account.win();
+        }
+        for (int i = 0; i < lossDelta; i++) {
+            account.lose();
+        }
+    }
+
+    /**
+     * Returns the generations of every rotated segment, oldest first
+     * @param fileName - name of the active log segment
+     * @return sorted generations
+     */
+    static long[] rotatedGenerations(String fileName) {
+        File active = new File(fileName).getAbsoluteFile();
+        String prefix = active.getName() + ".";
+        String[] names = active.getParentFile().list();
+        ArrayList<Long> generations = new ArrayList<>();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix)) {
+                    try {
+                        generations.add(Long.parseLong(name.substring(prefix.length())));
+                    } catch (NumberFormatException e) {
+                        // Not a rotated segment, for example a file left by another tool
+                    }
+                }
+            }
+        }
+        long[] out = new long[generations.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = generations.get(i);
+        }
+        Arrays.sort(out);
+        return out;
+    }
+
+    /**
+     * Reads the generation from the header of a segment
+     * @param segment - segment file
+     * @return generation of the segment
+     * @throws IOException if the header cannot be read or is invalid
+     */
+    private static long readGeneration(File segment) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(segment));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(segment + " is not a result log");
+            }
+            return in.readLong();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Queues records and waits until they are on disk. If no other thread is syncing, this thread becomes the
+     * leader and writes every queued record with one fsync. Otherwise it waits for the leader's batch,
+     * which usually already contains its records.
+     * @param payloads - record payloads, queued together
+     * @throws IOException if the log cannot be written
+     */
+    private void append(byte[]... payloads) throws IOException {
+        byte[] records = frame(payloads);
+
+        long ticket;
+        byte[] batch;
+        long batchEnd;
+        synchronized (this) {
+            pending.write(records, 0, records.length);
+            ticket = ++appendedCount;
+            // Another thread is writing, its next batch will contain this record
+            while (syncing && durableCount < ticket && failure == null) {
+                waitQuietly();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (durableCount >= ticket) {
+                return;
+            }
+            // This thread is the leader of the next group commit
+            syncing = true;
+            batch = pending.toByteArray();
+            batchEnd = appendedCount;
+            pending = new ByteArrayOutputStream();
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            synchronized (this) {
+                durableCount = batchEnd;
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+            throw e;
+        } finally {
+            synchronized (this) {
+                syncing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes and syncs records that are still pending. Caller must hold the lock and no sync may be in flight.
+     * @throws IOException if the log cannot be written
+     */
+    private void writePending() throws IOException {
+        if (pending.size() > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+            pending = new ByteArrayOutputStream();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            durableCount = appendedCount;
+        }
+        channel.force(false);
+        notifyAll();
+    }
+
+    /**
+     * Opens the active segment, writing its header if it is new
+     * @param newGeneration - generation of a new segment
+     * @throws IOException if the segment cannot be opened
+     */
+    private void openSegment(long newGeneration) throws IOException {
+        file = new RandomAccessFile(fileName, "rw");
+        channel = file.getChannel();
+        if (channel.size() < SEGMENT_HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putLong(newGeneration);
+            header.flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(false);
+            generation = newGeneration;
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            channel.read(header, 0);
+            generation = header.getLong(4);
+        }
+        channel.position(channel.size());
+    }
+
+    /**
+     * Waits on the log's monitor, keeping the interrupt flag if interrupted
+     */
+    private void waitQuietly() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Receives the records of a segment in the order they were logged
+     */
+    interface RecordApplier {
+        /**
+         * Games finished
+         * @param username - username of the account
+         * @param winDelta - wins to add
+         * @param lossDelta - losses to add
+         * @throws IOException if the record cannot be applied
+         */
+        void result(String username, int winDelta, int lossDelta) throws IOException;
+
+        /**
+         * The state of an account was logged
+         * @param account - logged account, isRemoved() is set if it was removed
+         * @throws IOException if the record cannot be applied
+         */
+        void account(Account account) throws IOException;
+    }
+}
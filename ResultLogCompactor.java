@@ -0,0 +1,134 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+
+/**
+ * Background compactor of the ResultLog. Rotated log segments are folded into the AccountStore in place: a result
+ * only rewrites the 8 byte counter slot of its account and a whole-account record rewrites or appends one record,
+ * so a compaction costs as much as the segments it folds, not as much as the store.
+ *
+ * Result records add to the stored counters, so folding one twice would count its games twice. Before anything is
+ * written to the store a segment holding results is rewritten to log every account it touches whole, in the state
+ * the segment leaves it in, and folding or replaying that segment again is harmless. Once a segment is folded the
+ * store records its generation and the segment is deleted, so a crash at any point never loses or double counts
+ * a game.
+ */
+public class ResultLogCompactor implements Runnable {
+    private final ResultLog log;
+    private final String storeFileName;
+
+    /**
+     * Creates a compactor
+     * @param log - result log to compact
+     * @param storeFileName - name of the AccountStore file the segments are folded into
+     */
+    public ResultLogCompactor(ResultLog log, String storeFileName) {
+        this.log = log;
+        this.storeFileName = storeFileName;
+    }
+
+    /**
+     * Starts compacting on a background daemon thread
+     * @return the compacting thread
+     */
+    public Thread start() {
+        Thread thread = new Thread(this, "result-log-compactor");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Runs one compaction, reporting errors instead of throwing them
+     */
+    @Override
+    public void run() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            // Segments that were not folded are kept, so nothing is lost and the next startup replays them
+            System.out.println("An error occurred while compacting the result log.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Rotates the active segment and folds every rotated segment the store does not hold yet into it, oldest
+     * first. Segments the store already holds are only deleted. Records of removed accounts stay in the store,
+     * since other AccountStores may have it mapped and purgeRemoved() would move records under them.
+     * @throws IOException if a segment or the store cannot be read or written
+     * @throws java.lang.IllegalArgumentException if a record does not fit in the store
+     */
+    public synchronized void compact() throws IOException {
+        log.rotate();
+        long[] generations = ResultLog.rotatedGenerations(log.getFileName());
+        if (generations.length == 0) {
+            return;
+        }
+
+        AccountStore store = AccountStore.open(storeFileName);
+        try {
+            for (long generation : generations) {
+                File segment = new File(log.getFileName() + "." + generation);
+                if (generation > store.getLogGeneration()) {
+                    fold(segment, generation, store);
+                }
+                // The store now holds this segment
+                segment.delete();
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Folds one segment into the store. The state each account of the segment ends up in is worked out first,
+     * from its stored record and the records of the segment. If the segment held results it is rewritten with
+     * those states, then they are written to the store and the generation is recorded once they are on disk.
+     * @param segment - segment to fold
+     * @param generation - generation of the segment
+     * @param store - store holding every older segment
+     * @throws IOException if the segment cannot be read or rewritten, or the store cannot grow
+     * @throws java.lang.IllegalArgumentException if a record does not fit in the store, in which case nothing
+     *     is written
+     */
+    private static void fold(File segment, long generation, AccountStore store) throws IOException {
+        LinkedHashMap<String, Account> folded = new LinkedHashMap<>();
+        boolean[] hasResults = new boolean[1];
+        ResultLog.read(segment, new ResultLog.RecordApplier() {
+            @Override
+            public void result(String username, int winDelta, int lossDelta) {
+                hasResults[0] = true;
+                Account account = folded.get(username);
+                if (account == null && store.contains(username)) {
+                    account = store.getAccount(username);
+                    folded.put(username, account);
+                }
+                // Otherwise the account was created in a segment that no longer exists, nothing to update
+                if (account != null && !account.isRemoved()) {
+                    ResultLog.apply(account, winDelta, lossDelta);
+                }
+            }
+
+            @Override
+            public void account(Account account) {
+                folded.put(account.getUsername(), account);
+            }
+        });
+        // Check every account before the store is touched, one the store cannot hold would stop every compaction
+        for (Account account : folded.values()) {
+            AccountStore.checkFields(account);
+        }
+
+        if (hasResults[0]) {
+            ResultLog.rewrite(segment, generation, folded.values());
+        }
+        for (Account account : folded.values()) {
+            store.apply(account);
+        }
+        // The records have to be on disk before the generation that says they are
+        store.force();
+        store.setLogGeneration(generation);
+        store.force();
+    }
+}
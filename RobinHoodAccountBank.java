@@ -0,0 +1,294 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * AccountBank implemented as a Robin Hood Linear Probing HashMap.
+ *
+ * The capacity is always a power of two and String.hashCode() is mixed before use, so the index is a mask instead
+ * of Math.abs(hash % length). On insert an account that is further from its home slot takes the place of one that
+ * is closer to its own, which keeps every probe sequence about the same length. Removing shifts the following
+ * accounts back by one slot instead of leaving a DEL marker, so churn never makes later probes longer.
+ */
+public class RobinHoodAccountBank {
+
+    /**
+     * The initial capacity of the table when created with the default constructor.
+     */
+    public static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The max load factor of the table. Robin Hood probing stays short at higher loads than plain linear probing.
+     */
+    public static final double MAX_LOAD_FACTOR = 0.85;
+
+    private Account[] table;
+    // Mixed hash of each slot's username, so probe distances never need String.hashCode()
+    private int[] hashes;
+    private int size;
+
+    /**
+     * Constructs a new RobinHoodAccountBank
+     */
+    public RobinHoodAccountBank() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs a new RobinHoodAccountBank sized for expectedSize accounts
+     * @param expectedSize number of accounts expected in the bank
+     */
+    public RobinHoodAccountBank(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (expectedSize >= capacity * MAX_LOAD_FACTOR) {
+            capacity *= 2;
+        }
+        table = new Account[capacity];
+        hashes = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Adds the given account, replacing the account with the same username if there is one.
+     * The bank stores its own copy of the account.
+     * @param account the account to add
+     * @return null if the username was not in the bank, the old username otherwise
+     * @throws java.lang.IllegalArgumentException if account, its username or its password is null
+     */
+    public String put(Account account) {
+        if (account == null || account.getUsername() == null || account.getPassword() == null) {
+            throw new IllegalArgumentException("Key or Value cannot be null");
+        }
+        Account entry = new Account(account.getUsername(), account.getPassword(), account.getWins(),
+                account.getLosses());
+        int hash = Hashing.mix(account.getUsername().hashCode());
+        int index = find(hash, account.getUsername());
+        if (index >= 0) {
+            table[index] = entry;
+            return account.getUsername();
+        }
+
+        if (size + 1 > table.length * MAX_LOAD_FACTOR) {
+            resizeBackingTable(table.length * 2);
+        }
+        insert(hash, entry);
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the account with the same username and shifts the rest of its cluster back by one slot.
+     * @param account account to be removed
+     * @return username of the removed account
+     * @throws java.lang.IllegalArgumentException if account is null
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public String remove(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        int index = find(Hashing.mix(account.getUsername().hashCode()), account.getUsername());
+        if (index < 0) {
+            throw new NoSuchElementException("Account is not in map");
+        }
+        String out = table[index].getUsername();
+
+        // Backward shift: pull back every following account that is not in its home slot
+        int mask = table.length - 1;
+        int next = (index + 1) & mask;
+        while (table[next] != null && distance(next) > 0) {
+            table[index] = table[next];
+            hashes[index] = hashes[next];
+            index = next;
+            next = (next + 1) & mask;
+        }
+        table[index] = null;
+        hashes[index] = 0;
+        size--;
+        return out;
+    }
+
+    /**
+     * Checks whether there is account in the bank that has the same username and password as the parameters
+     * @param username username provided by user
+     * @param password password provided by user
+     * @return true if valid account credentials. false if invalid account credentials
+     * @throws java.util.NoSuchElementException if the username is not in the bank
+     */
+    public boolean checkValue(String username, String password) {
+        return getAccount(new Account(username, password)).getPassword().equals(password);
+    }
+
+    /**
+     * Returns the account with the same username
+     * @param account account knowing username
+     * @return account given username, password, wins, and losses
+     * @throws java.lang.IllegalArgumentException if account is null
+     * @throws java.util.NoSuchElementException if the account is not in the bank
+     */
+    public Account getAccount(Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        int index = find(Hashing.mix(account.getUsername().hashCode()), account.getUsername());
+        if (index < 0) {
+            throw new NoSuchElementException("Key is not in map");
+        }
+        return table[index];
+    }
+
+    /**
+     * Resize the backing table to length.
+     * @param length new length of the backing table, rounded up to a power of two
+     * @throws java.lang.IllegalArgumentException if length cannot hold every account
+     */
+    public void resizeBackingTable(int length) {
+        int capacity = Integer.highestOneBit(Math.max(1, length - 1)) << 1;
+        if (capacity < size + 1) {
+            throw new IllegalArgumentException("Cannot resize to length smaller than HashMap size");
+        }
+        Account[] oldTable = table;
+        int[] oldHashes = hashes;
+        table = new Account[capacity];
+        hashes = new int[capacity];
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] != null) {
+                insert(oldHashes[i], oldTable[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns how many accounts sit at each probe length. Index i is the number of accounts found i slots after
+     * their home slot, so a lookup of that account looks at i + 1 slots.
+     * @return histogram of probe lengths
+     */
+    public int[] probeLengthHistogram() {
+        int[] histogram = new int[maxProbeLength() + 1];
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                histogram[distance(i)]++;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the longest distance between an account and its home slot
+     * @return worst case extra slots looked at by a successful lookup
+     */
+    public int maxProbeLength() {
+        int max = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                max = Math.max(max, distance(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the average distance between an account and its home slot
+     * @return average extra slots looked at by a successful lookup
+     */
+    public double averageProbeLength() {
+        long total = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                total += distance(i);
+            }
+        }
+        return size == 0 ? 0 : (double) total / size;
+    }
+
+    /**
+     * Returns the table of the map.
+     * @return the table of the map
+     */
+    public Account[] getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the size of the map.
+     * @return the size of the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clears the map.
+     */
+    public void clear() {
+        table = new Account[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Robin Hood insert of an account that is known not to be in the table
+     * @param hash mixed hash of the username
+     * @param account account to insert
+     */
+    private void insert(int hash, Account account) {
+        int mask = table.length - 1;
+        int index = hash & mask;
+        int dist = 0;
+        while (table[index] != null) {
+            int existing = distance(index);
+            // The resident is closer to home than we are, it gives up its slot and moves on instead
+            if (existing < dist) {
+                Account tempAccount = table[index];
+                int tempHash = hashes[index];
+                table[index] = account;
+                hashes[index] = hash;
+                account = tempAccount;
+                hash = tempHash;
+                dist = existing;
+            }
+            index = (index + 1) & mask;
+            dist++;
+        }
+        table[index] = account;
+        hashes[index] = hash;
+    }
+
+    /**
+     * Looks for a username. The search stops as soon as it reaches an account closer to its home slot than the
+     * username would be, since Robin Hood insertion would have placed the username before it.
+     * @param hash mixed hash of the username
+     * @param key username
+     * @return index of the account, or -1 if it is not in the table
+     */
+    private int find(int hash, String key) {
+        int mask = table.length - 1;
+        int index = hash & mask;
+        int dist = 0;
+        while (table[index] != null && distance(index) >= dist) {
+            if (hashes[index] == hash && table[index].getUsername().equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+            dist++;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns how far the account in a slot is from its home slot
+     * @param index slot holding an account
+     * @return probe distance
+     */
+    private int distance(int index) {
+        return (index - (hashes[index] & (table.length - 1))) & (table.length - 1);
+    }
+
+    /**
+     * Summarises the probe length statistics, for checking that lookups stay short under churn
+     * @return String representation of the probe length statistics
+     */
+    public String probeStatistics() {
+        return "RobinHoodAccountBank size " + size + ", capacity " + table.length + ", max probe length "
+                + maxProbeLength() + ", histogram " + Arrays.toString(probeLengthHistogram());
+    }
+}
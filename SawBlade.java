@@ -22,8 +22,6 @@ public class SawBlade extends Item {
     @Override
     public int use(Player caller, Player otherPlayer, Shotgun shotgun) {
         shotgun.sawOff();
-        System.out.println(caller.getName() + " has sawed off the shotgun.");
-        System.out.println("All shots on this shotgun do double damage.\nDouble the Stakes. Double the Fun.");
         return 9;
     }
 }
@@ -1,21 +1,36 @@
 import java.util.NoSuchElementException;
 
 /**
- * Shotgun class which is an Array-Backed Queue.
+ * Shotgun class which is a queue of shells packed into the bits of a long.
+ *
+ * Bit 0 is the next shell, bit i the shell i shots after it, and a set bit is a blank. Shooting shifts the chamber
+ * down by one, so the front is always bit 0 and loading sets the bit after the last shell. Shooting, peeking and
+ * counting blanks (Long.bitCount) are then a few instructions that never allocate. The boolean methods are the
+ * primitive form for the game engine, the Bullet methods wrap them for callers that want Bullet objects.
  */
 public class Shotgun {
+
+    /**
+     * Most shells a shotgun holds, one per bit of the chamber
+     */
+    public static final int MAX_SHELLS = Long.SIZE;
+
+    private final int chamberSize;
+    private long chamber;
     private int bulletCount;
-    private Bullet[] chamber;
-    private int front;
     private boolean isSawedOff;
 
     /**
      * Constructor
      * @param chamberSize size of shotgun chamber
+     * @throws java.lang.IllegalArgumentException if chamberSize is negative or more than MAX_SHELLS
      */
     public Shotgun(int chamberSize) {
-        chamber = new Bullet[chamberSize];
-        front = 0;
+        if (chamberSize < 0 || chamberSize > MAX_SHELLS) {
+            throw new IllegalArgumentException("Chamber size must be between 0 and " + MAX_SHELLS);
+        }
+        this.chamberSize = chamberSize;
+        chamber = 0;
         bulletCount = 0;
         isSawedOff = false;
     }
@@ -25,12 +40,20 @@ public class Shotgun {
      * @param bullet bullet to be loaded in
      */
     public void load(Bullet bullet) {
-        if (chamber.length == bulletCount) {
+        loadShell(bullet.isBlank());
+    }
+
+    /**
+     * Loads a shell behind the ones already in the shotgun
+     * @param isBlank whether the shell is a blank
+     */
+    public void loadShell(boolean isBlank) {
+        if (chamberSize == bulletCount) {
             throw new IndexOutOfBoundsException("Cannot add more bullets shotgun is full");
         }
-        // ArrayBackedQueue.enqueue();
-        int i = Math.abs((front + bulletCount) % chamber.length);
-        chamber[i] = bullet;
+        if (isBlank) {
+            chamber |= 1L << bulletCount;
+        }
         bulletCount++;
     }
 
@@ -39,13 +62,19 @@ public class Shotgun {
      * @return shot bullet
      */
     public Bullet shoot() {
+        return Bullet.valueOf(shootBlank());
+    }
+
+    /**
+     * Removes the next shell and shoots it
+     * @return true if the shot shell was a blank
+     */
+    public boolean shootBlank() {
         if (bulletCount == 0) {
             throw new NoSuchElementException("Cannot shoot/rack bullets from empty shotgun");
         }
-        // ArrayBackedQueue.dequeue();
-        Bullet racked = chamber[front];
-        chamber[front] = null;
-        front++;
+        boolean racked = (chamber & 1) != 0;
+        chamber >>>= 1;
         bulletCount--;
         return racked;
     }
@@ -55,10 +84,18 @@ public class Shotgun {
      * @return the next bullet
      */
     public Bullet peek() {
+        return Bullet.valueOf(peekBlank());
+    }
+
+    /**
+     * Checks the next shell of the shotgun
+     * @return true if the next shell is a blank
+     */
+    public boolean peekBlank() {
         if (bulletCount == 0) {
             throw new NoSuchElementException("Cannot peek empty chamber");
         }
-        return chamber[front];
+        return (chamber & 1) != 0;
     }
 
     /**
@@ -67,11 +104,8 @@ public class Shotgun {
      */
     @Override
     public String toString() {
-        int blanks = 0;
-        for (Bullet bullet : chamber) {
-            blanks = bullet.isBlank() ? blanks + 1 : blanks;
-        }
-        return "This shotgun has " + bulletCount + " bullets with " + (bulletCount-blanks) + " live rounds and " + blanks + " blanks.";
+        return "This shotgun has " + bulletCount + " bullets with " + getLiveCount() + " live rounds and "
+                + getBlankCount() + " blanks.";
     }
 
     /**
@@ -82,6 +116,22 @@ public class Shotgun {
         return bulletCount;
     }
 
+    /**
+     * Returns blanks left in shotgun
+     * @return number of blanks
+     */
+    public int getBlankCount() {
+        return Long.bitCount(chamber);
+    }
+
+    /**
+     * Returns live rounds left in shotgun
+     * @return number of live rounds
+     */
+    public int getLiveCount() {
+        return bulletCount - Long.bitCount(chamber);
+    }
+
     /**
      * Returns whether shotgun has been sawed off
      * @return isSawedOff
@@ -0,0 +1,396 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Monte Carlo simulation of Shotgun Roulette between two AI policies.
+ *
+ * Plays full games on GameEngine, dealt like the console game, without any console listener so nothing is printed.
+ * The games are split into ranges on a ForkJoin pool, each range collects its own Result on one thread, and the
+ * Results of neighbouring ranges are merged as the tasks join. Every game gets random numbers derived from the seed
+ * and its index, so a run gives the same Result whatever the number of threads.
+ *
+ * Run with: java Simulation [games] [threads] [seed]
+ */
+public class Simulation {
+    // Games below which a range is played on one thread instead of splitting it
+    private static final int SEQUENTIAL_GAMES = 1 << 10;
+
+    private final Function<Random, DecisionProvider> first;
+    private final Function<Random, DecisionProvider> second;
+    private final long seed;
+
+    /**
+     * Creates a simulation. Policies are created fresh for every game because they may keep state within a game.
+     * @param first - creates the policy of GameEngine.FIRST from its random numbers
+     * @param second - creates the policy of GameEngine.SECOND from its random numbers
+     * @param seed - seed every game's random numbers are derived from
+     * @throws java.lang.IllegalArgumentException if a policy is null
+     */
+    public Simulation(Function<Random, DecisionProvider> first, Function<Random, DecisionProvider> second,
+                      long seed) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Simulation needs a policy for both seats");
+        }
+        this.first = first;
+        this.second = second;
+        this.seed = seed;
+    }
+
+    /**
+     * Plays games on the common ForkJoin pool
+     * @param games - number of games to play
+     * @return statistics of every game
+     * @throws java.lang.IllegalArgumentException if games is negative
+     */
+    public Result run(long games) {
+        return run(games, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plays games on a ForkJoin pool
+     * @param games - number of games to play
+     * @param pool - pool to play the games on
+     * @return statistics of every game
+     * @throws java.lang.IllegalArgumentException if games is negative
+     */
+    public Result run(long games, ForkJoinPool pool) {
+        if (games < 0) {
+            throw new IllegalArgumentException("Number of games cannot be negative");
+        }
+        return pool.invoke(new GameRange(0, games));
+    }
+
+    /**
+     * Plays one game
+     * @param index - index of the game in the run, picks its random numbers
+     * @param result - Result the game is counted in
+     */
+    private void play(long index, Result result) {
+        GameEngine game = new GameEngine("First", "Second", new Random(mix(seed, index * 3)));
+        game.addListener(result);
+        game.play(first.apply(new Random(mix(seed, index * 3 + 1))),
+                second.apply(new Random(mix(seed, index * 3 + 2))));
+        result.gameEnded(game.getRound());
+    }
+
+    /**
+     * Spreads the bits of a seed and an index so neighbouring games get unrelated random numbers
+     * @param seed - seed of the run
+     * @param index - index of the random numbers
+     * @return seed for a Random
+     */
+    private static long mix(long seed, long index) {
+        long h = (seed + index) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Plays a range of games, splitting it in two while it is large
+     */
+    private class GameRange extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+
+        private final long start;
+        private final long end;
+
+        /**
+         * Creates the task for the games [start, end)
+         * @param start - index of the first game
+         * @param end - index after the last game
+         */
+        GameRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Plays the range, or splits it and merges the halves
+         * @return statistics of the games of the range
+         */
+        @Override
+        protected Result compute() {
+            if (end - start <= SEQUENTIAL_GAMES) {
+                Result result = new Result();
+                for (long i = start; i < end; i++) {
+                    play(i, result);
+                }
+                return result;
+            }
+            long middle = (start + end) >>> 1;
+            GameRange left = new GameRange(start, middle);
+            left.fork();
+            Result right = new GameRange(middle, end).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Statistics of a number of games: wins of each seat, histograms of game lengths in rounds and in turns, how
+     * often each seat used each item, and for each item a histogram of how many times it was used in a game. It
+     * counts the games it listens to, so it belongs to one thread until it is merged.
+     */
+    public static class Result implements GameListener {
+        private long games;
+        private final long[] wins = new long[2];
+        private long[] rounds = new long[8];
+        private long[] turns = new long[32];
+        private final long[][] items = new long[2][ItemRack.ITEM_KINDS];
+        // Games by the number of uses of each item kind, by both seats together
+        private final long[][] itemGames = new long[ItemRack.ITEM_KINDS][4];
+        // Turns taken and items used in the game being played, each turn ends with one shot
+        private int turnsTaken;
+        private final int[] itemsUsed = new int[ItemRack.ITEM_KINDS];
+
+        /**
+         * Counts an item use
+         * @param game - game being played
+         * @param seat - seat that used the item
+         * @param item - item action that was applied
+         */
+        @Override
+        public void itemUsed(GameEngine game, int seat, GameAction item) {
+            items[seat][item.getItem()]++;
+            itemsUsed[item.getItem()]++;
+        }
+
+        /**
+         * Counts a turn taken. Every turn ends with exactly one shot, turns lost to handcuffs fire none.
+         * @param game - game being played
+         * @param seat - seat that shot
+         * @param atSelf - true if the seat shot itself
+         * @param blank - whether the bullet was a blank
+         */
+        @Override
+        public void shotFired(GameEngine game, int seat, boolean atSelf, boolean blank) {
+            turnsTaken++;
+        }
+
+        /**
+         * Counts a win
+         * @param game - game being played
+         * @param winner - seat that is still alive
+         */
+        @Override
+        public void gameOver(GameEngine game, int winner) {
+            wins[winner]++;
+        }
+
+        /**
+         * Counts the length of a finished game
+         * @param round - round the game ended in
+         */
+        void gameEnded(int round) {
+            games++;
+            rounds = count(rounds, round);
+            turns = count(turns, turnsTaken);
+            turnsTaken = 0;
+            for (int i = 0; i < ItemRack.ITEM_KINDS; i++) {
+                itemGames[i] = count(itemGames[i], itemsUsed[i]);
+                itemsUsed[i] = 0;
+            }
+        }
+
+        /**
+         * Adds one to a histogram bucket, growing the histogram if the bucket is past its end
+         * @param histogram - histogram to count in
+         * @param bucket - bucket to add one to
+         * @return the histogram, or its larger copy
+         */
+        private static long[] count(long[] histogram, int bucket) {
+            if (bucket >= histogram.length) {
+                long[] larger = new long[Math.max(bucket + 1, histogram.length * 2)];
+                System.arraycopy(histogram, 0, larger, 0, histogram.length);
+                histogram = larger;
+            }
+            histogram[bucket]++;
+            return histogram;
+        }
+
+        /**
+         * Adds the statistics of another Result to this one
+         * @param other - Result to add
+         * @return this Result
+         */
+        Result merge(Result other) {
+            games += other.games;
+            wins[GameEngine.FIRST] += other.wins[GameEngine.FIRST];
+            wins[GameEngine.SECOND] += other.wins[GameEngine.SECOND];
+            rounds = add(rounds, other.rounds);
+            turns = add(turns, other.turns);
+            for (int seat = 0; seat < 2; seat++) {
+                for (int i = 0; i < ItemRack.ITEM_KINDS; i++) {
+                    items[seat][i] += other.items[seat][i];
+                }
+            }
+            for (int i = 0; i < ItemRack.ITEM_KINDS; i++) {
+                itemGames[i] = add(itemGames[i], other.itemGames[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Adds one histogram to another, growing it if the other is longer
+         * @param histogram - histogram to add to
+         * @param other - histogram to add
+         * @return the histogram, or its larger copy
+         */
+        private static long[] add(long[] histogram, long[] other) {
+            if (other.length > histogram.length) {
+                long[] larger = new long[other.length];
+                System.arraycopy(histogram, 0, larger, 0, histogram.length);
+                histogram = larger;
+            }
+            for (int i = 0; i < other.length; i++) {
+                histogram[i] += other[i];
+            }
+            return histogram;
+        }
+
+        /**
+         * Returns the number of games played
+         * @return games
+         */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * Returns the games a seat won
+         * @param seat - GameEngine.FIRST or GameEngine.SECOND
+         * @return wins of the seat
+         */
+        public long getWins(int seat) {
+            return wins[seat];
+        }
+
+        /**
+         * Returns the share of games a seat won
+         * @param seat - GameEngine.FIRST or GameEngine.SECOND
+         * @return win rate between 0 and 1, NaN if no games were played
+         */
+        public double getWinRate(int seat) {
+            return games == 0 ? Double.NaN : (double) wins[seat] / games;
+        }
+
+        /**
+         * Returns the games that ended in a round
+         * @param round - round number, 1 for the first
+         * @return number of games
+         */
+        public long getGamesEndedIn(int round) {
+            return round >= 0 && round < rounds.length ? rounds[round] : 0;
+        }
+
+        /**
+         * Returns the games in which the seats took a number of turns between them. A turn is counted when it ends
+         * with a shot, so dealing a round and turns lost to handcuffs are not turns.
+         * @param turn - number of turns taken
+         * @return number of games
+         */
+        public long getGamesLasting(int turn) {
+            return turn >= 0 && turn < turns.length ? turns[turn] : 0;
+        }
+
+        /**
+         * Returns how often a seat used an item
+         * @param seat - GameEngine.FIRST or GameEngine.SECOND
+         * @param item - item action
+         * @return number of uses
+         * @throws java.lang.IllegalArgumentException if the action is a shot
+         */
+        public long getItemUses(int seat, GameAction item) {
+            if (!item.isItem()) {
+                throw new IllegalArgumentException(item + " is not an item");
+            }
+            return items[seat][item.getItem()];
+        }
+
+        /**
+         * Returns the games in which an item was used a number of times, counting the uses of both seats
+         * @param item - item action
+         * @param uses - number of uses in a game
+         * @return number of games
+         * @throws java.lang.IllegalArgumentException if the action is a shot
+         */
+        public long getGamesUsing(GameAction item, int uses) {
+            if (!item.isItem()) {
+                throw new IllegalArgumentException(item + " is not an item");
+            }
+            long[] histogram = itemGames[item.getItem()];
+            return uses >= 0 && uses < histogram.length ? histogram[uses] : 0;
+        }
+
+        /**
+         * Shows the win rates and the histograms
+         * @return String representation of the Result
+         */
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("%d games%n", games));
+            out.append(String.format("First  wins %d (%.2f%%)%n", wins[GameEngine.FIRST],
+                    100 * getWinRate(GameEngine.FIRST)));
+            out.append(String.format("Second wins %d (%.2f%%)%n", wins[GameEngine.SECOND],
+                    100 * getWinRate(GameEngine.SECOND)));
+            out.append("Rounds per game:\n");
+            histogram(out, rounds);
+            out.append("Turns per game:\n");
+            histogram(out, turns);
+            out.append("Item uses per game:\n");
+            for (int i = 0; i < ItemRack.ITEM_KINDS; i++) {
+                GameAction item = GameAction.useItem(i);
+                out.append(String.format("%-17s First %6.3f   Second %6.3f%n", item,
+                        (double) items[GameEngine.FIRST][i] / Math.max(games, 1),
+                        (double) items[GameEngine.SECOND][i] / Math.max(games, 1)));
+            }
+            for (int i = 0; i < ItemRack.ITEM_KINDS; i++) {
+                out.append(GameAction.useItem(i)).append(" uses per game:\n");
+                histogram(out, itemGames[i]);
+            }
+            return out.toString();
+        }
+
+        /**
+         * Appends the non empty buckets of a histogram, each with its share of the games and a bar
+         * @param out - where to append
+         * @param histogram - histogram to show
+         */
+        private void histogram(StringBuilder out, long[] histogram) {
+            for (int i = 0; i < histogram.length; i++) {
+                if (histogram[i] != 0) {
+                    double share = (double) histogram[i] / games;
+                    out.append(String.format("%4d %12d %6.2f%% ", i, histogram[i], 100 * share));
+                    for (int bar = 0; bar < (int) Math.round(share * 50); bar++) {
+                        out.append('#');
+                    }
+                    out.append('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs BasicAi against BasicAi and reports the statistics and the throughput
+     * @param args number of games, number of threads and seed
+     */
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        Simulation simulation = new Simulation(BasicAi::new, BasicAi::new, seed);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        System.out.println(games + " games of BasicAi against BasicAi on " + threads + " threads");
+        long start = System.nanoTime();
+        Result result = simulation.run(games, pool);
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.print(result);
+        System.out.printf("%.1f s, %.0f games/s%n", nanos / 1e9, games / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Counting Bloom filter over usernames. It answers "definitely not present" without touching any table, so a
+ * failed login or a check for a free username costs a few array reads instead of a probe sequence.
+ *
+ * Each username sets HASH_FUNCTIONS counters picked from its String.hashCode(). All of them sit in one block of
+ * BLOCK_SIZE counters, a single cache line, so a lookup costs one cache miss however many counters it reads.
+ * Counters go back down when a username is removed, so the filter can follow an AccountBank through put() and
+ * remove(). Only the hash is used, so usernames with the same hashCode() share their counters, and the filter can
+ * be filled from stored hashes without creating any Strings.
+ *
+ * The filter never says a present username is absent. It can say an absent username might be present
+ * (a false positive), about 1% of the time while it holds no more than its capacity.
+ */
+public class UsernameFilter {
+
+    /**
+     * Number of counters set per username
+     */
+    public static final int HASH_FUNCTIONS = 7;
+
+    /**
+     * Counters per expected username. 10 counters and 7 hash functions give about 1% false positives.
+     */
+    public static final int COUNTERS_PER_USERNAME = 10;
+
+    /**
+     * Smallest number of usernames a filter is sized for
+     */
+    public static final int MIN_CAPACITY = 64;
+
+    /**
+     * Counters per block, one byte each so a block is one 64 byte cache line
+     */
+    public static final int BLOCK_SIZE = 64;
+
+    // A counter that reaches this value is stuck there, decrementing it could give a false negative
+    private static final int SATURATED = 0xFF;
+    private static final int BLOCK_BITS = 6;
+
+    private final byte[] counters;
+    private final int mask;
+    private final int capacity;
+    private int count;
+
+    /**
+     * Constructs an empty filter
+     * @param capacity number of usernames it should hold at about 1% false positives
+     */
+    public UsernameFilter(int capacity) {
+        this.capacity = Math.max(MIN_CAPACITY, capacity);
+        long length = Long.highestOneBit((long) this.capacity * COUNTERS_PER_USERNAME - 1) << 1;
+        counters = new byte[(int) Math.min(length, 1 << 30)];
+        // Picks the block, the low bits of an index are the counter inside the block
+        mask = (counters.length - 1) & -BLOCK_SIZE;
+    }
+
+    /**
+     * Adds a username
+     * @param username username to add
+     */
+    public void add(String username) {
+        addHash(username.hashCode());
+    }
+
+    /**
+     * Adds a username by its hash, for filling the filter from stored records
+     * @param hash String.hashCode() of the username
+     */
+    public void addHash(int hash) {
+        int block = Hashing.mix(hash) & mask;
+        long bits = mix2(hash);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int index = block + ((int) (bits >>> (i * BLOCK_BITS)) & (BLOCK_SIZE - 1));
+            if ((counters[index] & 0xFF) < SATURATED) {
+                counters[index]++;
+            }
+        }
+        count++;
+    }
+
+    /**
+     * Removes a username that was added before
+     * @param username username to remove
+     */
+    public void remove(String username) {
+        int hash = username.hashCode();
+        int block = Hashing.mix(hash) & mask;
+        long bits = mix2(hash);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int index = block + ((int) (bits >>> (i * BLOCK_BITS)) & (BLOCK_SIZE - 1));
+            int counter = counters[index] & 0xFF;
+            if (counter > 0 && counter < SATURATED) {
+                counters[index]--;
+            }
+        }
+        count--;
+    }
+
+    /**
+     * Checks whether a username might be present
+     * @param username username to look for
+     * @return false if the username is definitely not present, true if it might be
+     */
+    public boolean mightContain(String username) {
+        int hash = username.hashCode();
+        int block = Hashing.mix(hash) & mask;
+        long bits = mix2(hash);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            if (counters[block + ((int) (bits >>> (i * BLOCK_BITS)) & (BLOCK_SIZE - 1))] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of usernames added and not removed
+     * @return number of usernames in the filter
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the number of usernames the filter was sized for. Past it false positives become more common.
+     * @return capacity of the filter
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Picks the counters inside the block, BLOCK_BITS bits per hash function
+     * @param hash hash of the username
+     * @return mixed hash
+     */
+    private static long mix2(int hash) {
+        long h = hash * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 31;
+        h *= 0x94D049BB133111EBL;
+        return h ^ (h >>> 29);
+    }
+}
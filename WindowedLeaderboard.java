@@ -0,0 +1,367 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Leaderboard of the games played in a sliding time window, such as today, this week or this season, instead of
+ * lifetime wins and losses.
+ *
+ * The window is a ring of time buckets, each holding the wins and losses every account had in it. Games are
+ * counted through AccountListener.gamePlayed() into the newest bucket and into the window totals, which are kept in
+ * a TreeSet ordered by window win rate, so a game costs O(log n) and the top K are the first K entries of the set.
+ *
+ * When the clock passes into a new bucket the oldest bucket is swapped for an empty one in O(1). Its games still
+ * have to come off the window totals, so like the incremental resize of AccountBank that work is spread over the
+ * next games, EXPIRE_STEP entries each, and finished before the window is read. Expiring a bucket costs in
+ * proportion to the games in it, never to the number of accounts in the bank.
+ *
+ * Windows are kept in memory and start empty. Not thread safe, like AccountBank.
+ */
+public class WindowedLeaderboard implements AccountListener {
+
+    /**
+     * Number of accounts shown by default
+     */
+    public static final int DEFAULT_SIZE = 10;
+
+    // Bucket entries taken off the totals per game while a bucket is expiring
+    private static final int EXPIRE_STEP = 4;
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    private final String name;
+    private final int k;
+    private final long bucketMillis;
+    private final LongSupplier clock;
+
+    // Ring of buckets, username -> {wins, losses} of the games played in each
+    private final List<HashMap<String, int[]>> buckets;
+    // Time bucket number of the newest bucket, which is at index newest % buckets.size()
+    private long newest;
+    // Buckets that left the window but are still counted in the totals
+    private final ArrayDeque<HashMap<String, int[]>> expiring;
+    private Iterator<Map.Entry<String, int[]>> expiringEntries;
+
+    // Username -> games in the window, and the same totals ranked best first
+    private final HashMap<String, Totals> totals;
+    private final TreeSet<Totals> ranking;
+
+    /**
+     * Creates the leaderboard of the last 24 hours, in hourly buckets
+     * @param bank - bank whose games are counted
+     * @return daily leaderboard
+     */
+    public static WindowedLeaderboard daily(AccountBank bank) {
+        return new WindowedLeaderboard(bank, "today", HOUR, 24, DEFAULT_SIZE, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates the leaderboard of the last 7 days, in daily buckets
+     * @param bank - bank whose games are counted
+     * @return weekly leaderboard
+     */
+    public static WindowedLeaderboard weekly(AccountBank bank) {
+        return new WindowedLeaderboard(bank, "this week", DAY, 7, DEFAULT_SIZE, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates the leaderboard of a season, in weekly buckets
+     * @param bank - bank whose games are counted
+     * @param weeks - length of the season
+     * @return season leaderboard
+     */
+    public static WindowedLeaderboard season(AccountBank bank, int weeks) {
+        return new WindowedLeaderboard(bank, "this season", 7 * DAY, weeks, DEFAULT_SIZE, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a windowed leaderboard and subscribes it to the bank
+     * @param bank - bank whose games are counted
+     * @param name - name of the window, shown in the title
+     * @param bucketMillis - length of a bucket in milliseconds
+     * @param bucketCount - buckets in the window, the window is bucketMillis * bucketCount long
+     * @param k - number of accounts shown
+     * @param clock - current time in milliseconds
+     * @throws java.lang.IllegalArgumentException if bucketMillis, bucketCount or k is not positive
+     */
+    public WindowedLeaderboard(AccountBank bank, String name, long bucketMillis, int bucketCount, int k,
+                               LongSupplier clock) {
+        if (bucketMillis <= 0 || bucketCount <= 0 || k <= 0) {
+            throw new IllegalArgumentException("Bucket length, bucket count and leaderboard size must be positive");
+        }
+        this.name = name;
+        this.bucketMillis = bucketMillis;
+        this.k = k;
+        this.clock = clock;
+        buckets = new ArrayList<>();
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new HashMap<>());
+        }
+        newest = Math.floorDiv(clock.getAsLong(), bucketMillis);
+        expiring = new ArrayDeque<>();
+        totals = new HashMap<>();
+        ranking = new TreeSet<>(WindowedLeaderboard::compare);
+        bank.addListener(this);
+    }
+
+    /**
+     * Window totals are only changed by games
+     * @param account - the entry now stored in the bank
+     */
+    @Override
+    public void accountUpdated(Account account) {
+    }
+
+    /**
+     * Counts a game in the newest bucket and in the window totals
+     * @param account - the entry that played
+     * @param won - true if it won the game
+     */
+    @Override
+    public void gamePlayed(Account account, boolean won) {
+        rotate();
+        expire(EXPIRE_STEP);
+        String username = account.getUsername();
+        int[] games = bucket(newest).computeIfAbsent(username, key -> new int[2]);
+        games[won ? 0 : 1]++;
+        add(username, won ? 1 : 0, won ? 0 : 1);
+    }
+
+    /**
+     * Forgets every game of a removed account, so a new account with the same username starts from nothing
+     * @param account - the removed entry
+     */
+    @Override
+    public void accountRemoved(Account account) {
+        expire(Integer.MAX_VALUE);
+        for (HashMap<String, int[]> bucket : buckets) {
+            bucket.remove(account.getUsername());
+        }
+        Totals entry = totals.remove(account.getUsername());
+        if (entry != null) {
+            ranking.remove(entry);
+        }
+    }
+
+    /**
+     * Forgets every game
+     */
+    @Override
+    public void accountsCleared() {
+        for (HashMap<String, int[]> bucket : buckets) {
+            bucket.clear();
+        }
+        expiring.clear();
+        expiringEntries = null;
+        totals.clear();
+        ranking.clear();
+    }
+
+    /**
+     * Returns the best accounts of the window, best first, ranked by the win rate of their games in the window
+     * @return up to k snapshots of window totals
+     */
+    public List<Totals> top() {
+        rotate();
+        expire(Integer.MAX_VALUE);
+        List<Totals> out = new ArrayList<>();
+        for (Totals entry : ranking) {
+            if (out.size() == k) {
+                break;
+            }
+            out.add(new Totals(entry.username, entry.wins, entry.losses));
+        }
+        return out;
+    }
+
+    /**
+     * Returns the games an account played in the window
+     * @param username - username of the account
+     * @return snapshot of its window totals, with no games if it did not play
+     */
+    public Totals totalsOf(String username) {
+        rotate();
+        expire(Integer.MAX_VALUE);
+        Totals entry = totals.get(username);
+        return entry == null ? new Totals(username, 0, 0) : new Totals(username, entry.wins, entry.losses);
+    }
+
+    /**
+     * Returns the number of accounts that played in the window
+     * @return number of ranked accounts
+     */
+    public int size() {
+        rotate();
+        expire(Integer.MAX_VALUE);
+        return totals.size();
+    }
+
+    /**
+     * Overrides Object's toString Method
+     * @return String representation of the top accounts of the window, in the same format as Leaderboard
+     */
+    @Override
+    public String toString() {
+        String out = "----------------------------------\nLeaderboard (" + name + "):\n";
+        List<Totals> top = top();
+        for (int i = 0; i < top.size(); i++) {
+            out += (i + 1) + ". " + top.get(i);
+        }
+        out += "----------------------------------\n";
+        return out;
+    }
+
+    /**
+     * Moves the window up to the current time. Each bucket that leaves the window is swapped for an empty one and
+     * queued to come off the totals. Once every bucket has left nothing more can expire, so long idle gaps cost
+     * no more than one full turn of the ring.
+     */
+    private void rotate() {
+        long now = Math.floorDiv(clock.getAsLong(), bucketMillis);
+        long steps = Math.min(now - newest, buckets.size());
+        for (long i = 0; i < steps; i++) {
+            int index = (int) Math.floorMod(newest + 1 + i, (long) buckets.size());
+            if (!buckets.get(index).isEmpty()) {
+                expiring.add(buckets.get(index));
+                buckets.set(index, new HashMap<>());
+            }
+        }
+        if (now > newest) {
+            newest = now;
+        }
+    }
+
+    /**
+     * Takes the games of expired buckets off the totals
+     * @param entries - most bucket entries to take off
+     */
+    private void expire(int entries) {
+        while (entries > 0 && !expiring.isEmpty()) {
+            if (expiringEntries == null) {
+                expiringEntries = expiring.peek().entrySet().iterator();
+            }
+            while (entries > 0 && expiringEntries.hasNext()) {
+                Map.Entry<String, int[]> entry = expiringEntries.next();
+                add(entry.getKey(), -entry.getValue()[0], -entry.getValue()[1]);
+                entries--;
+            }
+            if (!expiringEntries.hasNext()) {
+                expiring.poll();
+                expiringEntries = null;
+            }
+        }
+    }
+
+    /**
+     * Changes the window totals of an account and re-ranks it. Accounts left without games leave the ranking.
+     * @param username - username of the account
+     * @param wins - change of its wins
+     * @param losses - change of its losses
+     */
+    private void add(String username, int wins, int losses) {
+        Totals entry = totals.get(username);
+        if (entry == null) {
+            entry = new Totals(username, 0, 0);
+            totals.put(username, entry);
+        } else {
+            ranking.remove(entry);
+        }
+        entry.wins += wins;
+        entry.losses += losses;
+        if (entry.wins + entry.losses > 0) {
+            ranking.add(entry);
+        } else {
+            totals.remove(username);
+        }
+    }
+
+    /**
+     * Returns the bucket of a time bucket number
+     * @param bucketNumber - time bucket number
+     * @return its bucket in the ring
+     */
+    private HashMap<String, int[]> bucket(long bucketNumber) {
+        return buckets.get((int) Math.floorMod(bucketNumber, (long) buckets.size()));
+    }
+
+    /**
+     * Orders totals best first: by win rate, then by wins, then by username so that no two are equal
+     * @param a - totals
+     * @param b - totals
+     * @return negative if a ranks higher
+     */
+    private static int compare(Totals a, Totals b) {
+        int out = Double.compare(b.getWinRate(), a.getWinRate());
+        if (out == 0) {
+            out = Integer.compare(b.wins, a.wins);
+        }
+        return out != 0 ? out : a.username.compareTo(b.username);
+    }
+
+    /**
+     * Wins and losses of one account in the window
+     */
+    public static class Totals {
+        private final String username;
+        private int wins;
+        private int losses;
+
+        /**
+         * Creates window totals
+         * @param username - username of the account
+         * @param wins - wins in the window
+         * @param losses - losses in the window
+         */
+        Totals(String username, int wins, int losses) {
+            this.username = username;
+            this.wins = wins;
+            this.losses = losses;
+        }
+
+        /**
+         * Returns username
+         * @return username
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * Returns wins in the window
+         * @return wins
+         */
+        public int getWins() {
+            return wins;
+        }
+
+        /**
+         * Returns losses in the window
+         * @return losses
+         */
+        public int getLosses() {
+            return losses;
+        }
+
+        /**
+         * Returns the win rate in the window
+         * @return wins / games, NaN if no games were played
+         */
+        public double getWinRate() {
+            return wins / (wins + losses + 0.0);
+        }
+
+        /**
+         * Overrides Object's toString function, in the same format as Account
+         * @return String displaying account name as well as win rate in the window
+         */
+        @Override
+        public String toString() {
+            return username + String.format("\t\tWinrate: %.1f", getWinRate() * 100) + "%\n";
+        }
+    }
+}